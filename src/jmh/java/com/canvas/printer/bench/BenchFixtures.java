@@ -0,0 +1,198 @@
+package com.canvas.printer.bench;
+
+import com.canvas.printer.model.CanvasQuiz;
+import com.canvas.printer.model.CanvasUser;
+import com.canvas.printer.model.CourseRoster;
+import com.canvas.printer.model.PrintableQuiz;
+import com.canvas.printer.model.QuizSubmissionInfo;
+import com.canvas.printer.model.StudentSubmission;
+import com.canvas.printer.service.QuizMergePlan;
+import com.canvas.printer.service.SubmissionStreamReader;
+import com.canvas.printer.service.SyntheticAnswers;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Canvas payloads for the benchmarks.
+ *
+ * The quiz submission is the recorded sample in templates/ignore.md. Questions and
+ * assignment submissions are synthetic but shaped like Canvas's: the five question
+ * types the merge handles, in rotation, with HTML question text, and a
+ * submission_history holding several attempts. Everything is seeded, so runs compare.
+ */
+public final class BenchFixtures {
+
+    public static final ObjectMapper MAPPER = new ObjectMapper();
+    public static final String COURSE_ID = "1001";
+    public static final String QUIZ_ID = "24171480";
+    public static final String STUDENT_ID = "119673873";
+
+    private static final String[] TYPES = {
+            "multiple_choice_question",
+            "true_false_question",
+            "multiple_answers_question",
+            "matching_question",
+            "multiple_dropdowns_question" };
+    private static final int OPTIONS = 4;
+
+    private BenchFixtures() {
+    }
+
+    // Recorded GET /quizzes/:id/submissions?user_ids[]= response
+    public static byte[] recordedQuizSubmission() {
+        try (InputStream in = BenchFixtures.class.getResourceAsStream("/templates/ignore.md")) {
+            if (in == null) {
+                throw new IllegalStateException("templates/ignore.md not on the classpath");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // GET /quizzes/:id/questions, all pages joined
+    public static ArrayNode questions(int count) {
+        ArrayNode questions = MAPPER.createArrayNode();
+        for (int q = 1; q <= count; q++) {
+            String type = TYPES[(q - 1) % TYPES.length];
+            ObjectNode node = questions.addObject()
+                    .put("id", questionId(q))
+                    .put("question_type", type)
+                    .put("question_text", "<p>Question " + q + ": read the passage and choose the best answer."
+                            + " <strong>Only one</strong> reading of the underlined word is correct.</p>")
+                    .put("points_possible", 1.0)
+                    .put("neutral_comments", q % 3 == 0 ? "<p>See chapter " + (q % 12 + 1) + ".</p>" : "");
+            ArrayNode answers = node.putArray("answers");
+
+            switch (type) {
+                case "matching_question" -> {
+                    ArrayNode matches = node.putArray("matches");
+                    for (int k = 0; k < OPTIONS; k++) {
+                        matches.addObject().put("match_id", matchId(q, k)).put("text", "Right " + k);
+                        answers.addObject()
+                                .put("id", optionId(q, k))
+                                .put("text", "Left " + k)
+                                .put("match_id", matchId(q, k));
+                    }
+                }
+                case "multiple_dropdowns_question" -> {
+                    for (int k = 0; k < OPTIONS; k++) {
+                        answers.addObject()
+                                .put("id", optionId(q, k))
+                                .put("text", "choice " + k)
+                                .put("blank_id", "blank" + (k / 2))
+                                .put("weight", k % 2 == 0 ? 100 : 0);
+                    }
+                }
+                case "true_false_question" -> {
+                    answers.addObject().put("id", optionId(q, 0)).put("text", "True").put("weight", 100);
+                    answers.addObject().put("id", optionId(q, 1)).put("text", "False").put("weight", 0);
+                }
+                default -> {
+                    for (int k = 0; k < OPTIONS; k++) {
+                        boolean correct = k == 0 || ("multiple_answers_question".equals(type) && k == 2);
+                        answers.addObject()
+                                .put("id", optionId(q, k))
+                                .put("text", "Option " + (char) ('A' + k))
+                                .put("weight", correct ? 100 : 0)
+                                .put("comments", k == 1 ? "Common mistake: check the kanji." : "");
+                    }
+                }
+            }
+        }
+        return questions;
+    }
+
+    /**
+     * GET /assignments/:id/submissions/:user?include[]=submission_history. Every attempt
+     * carries a full submission_data array, as Canvas sends it. About one question in
+     * ten is skipped and about a third are answered wrong.
+     */
+    public static byte[] submission(int count, int attempts) {
+        return submission(count, attempts, SyntheticAnswers.Plan.score(0.67, 0).skipping(0.1));
+    }
+
+    // As above, answered as the plan says
+    public static byte[] submission(int count, int attempts, SyntheticAnswers.Plan answers) {
+        Random random = new Random(42);
+        ArrayNode questions = questions(count);
+        ObjectNode root = MAPPER.createObjectNode()
+                .put("id", 728377296L)
+                .put("user_id", Long.parseLong(STUDENT_ID))
+                .put("score", count * 0.8)
+                .put("attempt", attempts)
+                .put("workflow_state", "graded");
+        ArrayNode history = root.putArray("submission_history");
+        for (int a = 1; a <= attempts; a++) {
+            ObjectNode attempt = history.addObject()
+                    .put("attempt", a)
+                    .put("score", count * 0.8)
+                    .put("submitted_at", "2025-11-26T02:46:42Z")
+                    .put("workflow_state", "graded");
+            attempt.putArray("attachments");
+            attempt.set("submission_data", new SyntheticAnswers(MAPPER).submissionData(questions, answers, random));
+        }
+        return toBytes(root);
+    }
+
+    public static CanvasQuiz quiz(int count) {
+        return new CanvasQuiz(Long.parseLong(QUIZ_ID), "JLPT N3 Practice Test (" + count + " questions)", count, 5001,
+                count, 0, 60, List.of(TYPES), null, null);
+    }
+
+    public static CourseRoster roster(int students) {
+        List<CanvasUser> users = new ArrayList<>();
+        users.add(new CanvasUser(Long.parseLong(STUDENT_ID), "Nguyen Van A", "Nguyen, Van A"));
+        for (int i = 1; i < students; i++) {
+            users.add(new CanvasUser(100_000L + i, "Student " + i, "Student, " + i));
+        }
+        return CourseRoster.of(COURSE_ID, users, Instant.now());
+    }
+
+    // A merged sheet for the render benchmark, built without Spring
+    public static PrintableQuiz printableQuiz(int count) {
+        try {
+            SubmissionStreamReader reader = new SubmissionStreamReader(MAPPER);
+            StudentSubmission submission = reader.readSubmission(new ByteArrayInputStream(submission(count, 1)));
+            QuizSubmissionInfo info = reader.readFirstQuizSubmission(
+                    new ByteArrayInputStream(recordedQuizSubmission()));
+            CanvasQuiz quiz = quiz(count);
+            return new PrintableQuiz(QUIZ_ID, STUDENT_ID, quiz.title(), "Nguyen Van A", submission.score(),
+                    info.startedAt(), info.finishedAt(), "0:23:14", info.attempt(), quiz.points_possible(),
+                    quiz.time_limit(), quiz.question_types(), QuizMergePlan.compile(questions(count))
+                            .apply(submission.submissionData()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] toBytes(Object value) {
+        try {
+            return MAPPER.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long questionId(int q) {
+        return 600_000_000L + q;
+    }
+
+    private static long optionId(int q, int k) {
+        return questionId(q) * 10 + k;
+    }
+
+    private static long matchId(int q, int k) {
+        return 9000L + q * 10L + k;
+    }
+}
@@ -0,0 +1,67 @@
+package com.canvas.printer.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders quiz-print-view.html the way the print endpoint does: one merged sheet,
+ * SpEL expressions, template cache on (Spring Boot's defaults outside devtools).
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrintViewRenderBenchmark {
+
+    @Param({ "50", "200", "1000" })
+    int questions;
+
+    private SpringTemplateEngine engine;
+    private Context context;
+
+    @Setup
+    public void setUp() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resolver.setCacheable(true);
+
+        engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+
+        var quiz = BenchFixtures.printableQuiz(questions);
+        context = new Context(Locale.US);
+        context.setVariable("documentTitle", quiz.quizTitle() + " - " + quiz.studentName());
+        context.setVariable("quizzes", List.of(quiz));
+    }
+
+    @Benchmark
+    public int render() {
+        StringWriter out = new StringWriter(64 * 1024);
+        engine.process("quiz-print-view", context, out);
+        return out.getBuffer().length();
+    }
+}
@@ -0,0 +1,96 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.bench.BenchFixtures;
+import com.canvas.printer.model.CourseRoster;
+import com.canvas.printer.model.PrintableQuiz;
+import com.canvas.printer.model.QuizDefinition;
+import com.canvas.printer.model.QuizSubmissionInfo;
+import com.canvas.printer.model.StudentSubmission;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The getPrintableQuiz pipeline minus HTTP: parse the Canvas payloads, then merge
+ * them against a cached definition.
+ *
+ * merge         - per student, inputs already parsed (what a batch print repeats)
+ * parseAndMerge - per student, from raw response bytes
+ * compilePlan   - per quiz version, paid once by QuizDefinitionCache
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QuizMergeBenchmark {
+
+    @Param({ "50", "200", "1000" })
+    int questions;
+
+    // Attempts in submission_history; only the last one is kept by the reader
+    @Param({ "3" })
+    int attempts;
+
+    // A SyntheticAnswers plan, e.g. -p answers=correct,wrong,random
+    @Param({ "score:0.67@0.1" })
+    String answers;
+
+    private QuizMergerService merger;
+    private SubmissionStreamReader reader;
+    private ArrayNode questionsJson;
+    private QuizDefinition definition;
+    private CourseRoster roster;
+    private byte[] submissionBytes;
+    private byte[] quizSubmissionBytes;
+    private StudentSubmission submission;
+    private QuizSubmissionInfo quizSubmission;
+
+    @Setup
+    public void setUp() throws IOException {
+        merger = new QuizMergerService(null, null, null, null, null, null, null, null, BenchFixtures.MAPPER, Duration.ofSeconds(20), 4, 100);
+        reader = new SubmissionStreamReader(BenchFixtures.MAPPER);
+
+        questionsJson = BenchFixtures.questions(questions);
+        definition = new QuizDefinition(BenchFixtures.COURSE_ID, BenchFixtures.QUIZ_ID, 3, questionsJson,
+                BenchFixtures.quiz(questions), QuizMergePlan.compile(questionsJson));
+        roster = BenchFixtures.roster(40);
+
+        submissionBytes = BenchFixtures.submission(questions, attempts, SyntheticAnswers.Plan.parse(answers));
+        quizSubmissionBytes = BenchFixtures.recordedQuizSubmission();
+        submission = reader.readSubmission(new ByteArrayInputStream(submissionBytes));
+        quizSubmission = reader.readFirstQuizSubmission(new ByteArrayInputStream(quizSubmissionBytes));
+    }
+
+    @Benchmark
+    public PrintableQuiz merge() {
+        return merger.mergeStudent(definition, BenchFixtures.STUDENT_ID, roster, submission, quizSubmission);
+    }
+
+    @Benchmark
+    public PrintableQuiz parseAndMerge() throws IOException {
+        StudentSubmission parsed = reader.readSubmission(new ByteArrayInputStream(submissionBytes));
+        QuizSubmissionInfo info = reader.readFirstQuizSubmission(new ByteArrayInputStream(quizSubmissionBytes));
+        return merger.mergeStudent(definition, BenchFixtures.STUDENT_ID, roster, parsed, info);
+    }
+
+    @Benchmark
+    public QuizMergePlan compilePlan() {
+        return QuizMergePlan.compile(questionsJson);
+    }
+}
@@ -0,0 +1,61 @@
+package com.canvas.printer.controller;
+
+import com.canvas.printer.service.FinalSvgAsset;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the pre-processed final SVG. The URL contains the content hash, so the
+ * response can be cached for a year without revalidation.
+ */
+@RestController
+public class AssetController {
+
+    private static final MediaType SVG = MediaType.valueOf("image/svg+xml");
+
+    private final FinalSvgAsset finalSvg;
+
+    public AssetController(FinalSvgAsset finalSvg) {
+        this.finalSvg = finalSvg;
+    }
+
+    @GetMapping("/assets/final-{hash}.svg")
+    public ResponseEntity<byte[]> finalSvg(
+            @PathVariable String hash,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, defaultValue = "") String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // 1. Unknown or stale hash: the page that asked for it is out of date
+        if (!finalSvg.isAvailable() || !finalSvg.hash().equals(hash)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        String etag = "\"" + finalSvg.hash() + "\"";
+        CacheControl cache = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+        // 2. Revalidation (only after a forced reload, given the immutable hint)
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cache).build();
+        }
+
+        // 3. Precompressed bytes when the client takes gzip, the plain SVG otherwise
+        boolean gzip = acceptEncoding.toLowerCase().contains("gzip");
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(SVG)
+                .eTag(etag)
+                .cacheControl(cache)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(gzip ? finalSvg.gzipped() : finalSvg.svg());
+    }
+}
@@ -0,0 +1,58 @@
+package com.canvas.printer.controller;
+
+import com.canvas.printer.service.FinalSvgAsset;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.dialect.AbstractDialect;
+import org.thymeleaf.dialect.IExpressionObjectDialect;
+import org.thymeleaf.expression.IExpressionObjectFactory;
+
+import java.util.Set;
+
+/**
+ * Gives every template the hashed asset URLs as #assets, whoever renders it: views
+ * resolved by Spring MVC as well as the pages QuizPrintController, PrintJobService and
+ * QuizPdfRenderer process themselves with their own Context.
+ * Usage: ${#assets.finalSvgUrl()}
+ */
+@Component
+public class AssetDialect extends AbstractDialect implements IExpressionObjectDialect {
+
+    private static final String NAME = "assets";
+
+    private final Assets assets;
+
+    public AssetDialect(FinalSvgAsset finalSvg) {
+        super("Assets");
+        this.assets = new Assets(finalSvg);
+    }
+
+    /** What #assets offers. */
+    public record Assets(FinalSvgAsset finalSvg) {
+
+        // null while final.html is absent; fragments/final-asset then renders nothing
+        public String finalSvgUrl() {
+            return finalSvg.url();
+        }
+    }
+
+    @Override
+    public IExpressionObjectFactory getExpressionObjectFactory() {
+        return new IExpressionObjectFactory() {
+            @Override
+            public Set<String> getAllExpressionObjectNames() {
+                return Set.of(NAME);
+            }
+
+            @Override
+            public Object buildObject(IExpressionContext context, String expressionObjectName) {
+                return NAME.equals(expressionObjectName) ? assets : null;
+            }
+
+            @Override
+            public boolean isCacheable(String expressionObjectName) {
+                return true;
+            }
+        };
+    }
+}
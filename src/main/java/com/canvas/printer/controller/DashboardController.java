@@ -1,40 +1,143 @@
 package com.canvas.printer.controller;
 
+import com.canvas.printer.model.CanvasSubmission;
+import com.canvas.printer.model.CanvasUser;
+import com.canvas.printer.model.CourseRoster;
 import com.canvas.printer.service.CanvasApiService;
+import com.canvas.printer.service.CanvasFetchScope;
+import com.canvas.printer.service.CourseRosterCache;
+import com.canvas.printer.service.SubmissionIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
 
 @Controller
 public class DashboardController {
 
+    private static final Logger logger = LoggerFactory.getLogger(DashboardController.class);
     private final CanvasApiService apiService;
-    // UPDATE THIS TO YOUR REAL COURSE ID
-    private final String DEFAULT_COURSE_ID = "13295775";
+    private final CourseRosterCache rosterCache;
+    private final SubmissionIndex submissionIndex;
+    private final List<String> courseIds;
+    private final Duration callTimeout;
 
-    public DashboardController(CanvasApiService apiService) {
+    public DashboardController(CanvasApiService apiService, CourseRosterCache rosterCache,
+            SubmissionIndex submissionIndex,
+            @Value("${canvas.dashboard.course-ids:13295775}") List<String> courseIds,
+            @Value("${canvas.api.call-timeout:PT20S}") Duration callTimeout) {
         this.apiService = apiService;
+        this.rosterCache = rosterCache;
+        this.submissionIndex = submissionIndex;
+        this.courseIds = courseIds;
+        this.callTimeout = callTimeout;
     }
 
+    /**
+     * One panel per course in canvas.dashboard.course-ids. The page itself makes no Canvas
+     * call; each panel loads its own quiz list, so a slow course only delays its own panel.
+     */
     @GetMapping("/")
-    public String listQuizzes(Model model) {
-        var quizzes = apiService.getQuizzes(DEFAULT_COURSE_ID);
-        model.addAttribute("quizzes", quizzes);
-        model.addAttribute("courseId", DEFAULT_COURSE_ID);
+    public String listCourses(Model model) {
+        model.addAttribute("courseIds", courseIds);
         return "dashboard-quizzes";
     }
 
+    // One course's panel, fetched by the dashboard page
+    @GetMapping("/course/{courseId}/quizzes")
+    public String listQuizzes(@PathVariable String courseId, Model model) {
+        model.addAttribute("courseId", courseId);
+        try (var scope = new CanvasFetchScope(callTimeout)) {
+            var quizzes = scope.fork("quizzes", () -> apiService.getQuizzes(courseId));
+            // Loaded alongside, so opening a quiz's submissions already has the names
+            var roster = scope.fork("course roster", () -> loadRoster(courseId));
+            scope.join();
+            model.addAttribute("quizzes", quizzes.get());
+            model.addAttribute("roster", roster.get());
+        } catch (Exception e) {
+            logger.warn("Quizzes unavailable for course {}: {}", courseId, e.getMessage());
+            model.addAttribute("error", e.getMessage());
+        }
+        return "fragments/course-panel :: panel";
+    }
+
     @GetMapping("/course/{courseId}/quiz/{quizId}/assignment/{assignId}/submissions")
     public String listSubmissions(@PathVariable String courseId,
             @PathVariable String quizId,
             @PathVariable String assignId,
             Model model) {
-        var submissions = apiService.getSubmissions(courseId, assignId);
+        CourseRoster roster = loadRoster(courseId);
+        // Sorted like a gradebook; students missing from the roster go last, by id
+        var submissions = submissionIndex.getSubmissions(courseId, assignId).stream()
+                .sorted(Comparator.comparing((CanvasSubmission s) -> sortableName(roster, s.user_id()),
+                        Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                        .thenComparingLong(CanvasSubmission::user_id))
+                .toList();
         model.addAttribute("submissions", submissions);
+        model.addAttribute("roster", roster);
         model.addAttribute("courseId", courseId);
         model.addAttribute("quizId", quizId);
         model.addAttribute("assignId", assignId);
         return "dashboard-submissions";
     }
-}
\ No newline at end of file
+
+    /**
+     * Drops the cached roster and downloads it again (e.g. after enrolments change).
+     * Usage: POST /api/course/123/roster/refresh
+     */
+    @PostMapping("/api/course/{courseId}/roster/refresh")
+    @ResponseBody
+    public ResponseEntity<String> refreshRoster(@PathVariable String courseId) {
+        try {
+            CourseRoster roster = rosterCache.refresh(courseId);
+            return ResponseEntity.ok("Roster refreshed: " + roster.size() + " students");
+        } catch (Exception e) {
+            return ResponseEntity.status(502).body("Error refreshing roster: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the locally synced submissions so the next load lists them in full
+     * (e.g. after a submission was deleted or excused, which the incremental sync can't see).
+     * Usage: POST /api/course/123/assignment/456/submissions/resync
+     */
+    @PostMapping("/api/course/{courseId}/assignment/{assignId}/submissions/resync")
+    @ResponseBody
+    public ResponseEntity<String> resyncSubmissions(@PathVariable String courseId, @PathVariable String assignId) {
+        try {
+            submissionIndex.invalidate(courseId, assignId);
+            var submissions = submissionIndex.getSubmissions(courseId, assignId);
+            return ResponseEntity.ok("Submissions resynced: " + submissions.size() + " students");
+        } catch (Exception e) {
+            return ResponseEntity.status(502).body("Error resyncing submissions: " + e.getMessage());
+        }
+    }
+
+    private static String sortableName(CourseRoster roster, long userId) {
+        CanvasUser user = (roster != null) ? roster.find(userId) : null;
+        if (user == null) {
+            return null;
+        }
+        return (user.sortable_name() != null) ? user.sortable_name() : user.name();
+    }
+
+    // Names are a nicety on the dashboard; fall back to bare user ids if the roster is unavailable
+    private CourseRoster loadRoster(String courseId) {
+        try {
+            return rosterCache.get(courseId);
+        } catch (Exception e) {
+            logger.warn("Roster unavailable for course {}: {}", courseId, e.getMessage());
+            return null;
+        }
+    }
+}
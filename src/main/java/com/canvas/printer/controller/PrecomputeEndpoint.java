@@ -0,0 +1,26 @@
+package com.canvas.printer.controller;
+
+import com.canvas.printer.service.PrintPrecomputeService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Background precompute progress: GET /actuator/precompute
+ * (add "precompute" to management.endpoints.web.exposure.include).
+ */
+@Component
+@Endpoint(id = "precompute")
+public class PrecomputeEndpoint {
+
+    private final PrintPrecomputeService precomputeService;
+
+    public PrecomputeEndpoint(PrintPrecomputeService precomputeService) {
+        this.precomputeService = precomputeService;
+    }
+
+    @ReadOperation
+    public PrintPrecomputeService.Status status() {
+        return precomputeService.status();
+    }
+}
@@ -0,0 +1,172 @@
+package com.canvas.printer.controller;
+
+import com.canvas.printer.service.PrintJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Print jobs: submit a print, follow its progress, download the file when it is done.
+ */
+@Controller
+public class PrintJobController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrintJobController.class);
+
+    private final PrintJobService jobService;
+    private final Duration eventsTimeout;
+
+    public PrintJobController(PrintJobService jobService,
+            @Value("${canvas.jobs.events-timeout:PT30M}") Duration eventsTimeout) {
+        this.jobService = jobService;
+        this.eventsTimeout = eventsTimeout;
+    }
+
+    /** The body of POST /jobs; format (html, pdf) and priority (high, normal, low) are optional. */
+    public record JobRequest(List<PrintJobService.Item> items, String format, String priority) {
+    }
+
+    /**
+     * Queues a print and answers 202 at once, with the job's status and its URL in Location.
+     * Usage: POST /jobs with
+     * {"items":[{"courseId":"123","quizId":"456","assignId":"789","students":["111"]}],"format":"pdf"}
+     * (no students: the whole class)
+     */
+    @PostMapping("/jobs")
+    @ResponseBody
+    public ResponseEntity<?> submit(@RequestBody JobRequest request) {
+        PrintJobService.Status status;
+        try {
+            status = jobService.submit(request.items(),
+                    parse(PrintJobService.Format.class, request.format(), PrintJobService.Format.HTML),
+                    parse(PrintJobService.Priority.class, request.priority(), PrintJobService.Priority.NORMAL));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(e.getMessage());
+        }
+        return ResponseEntity.accepted().location(URI.create("/jobs/" + status.id())).body(status);
+    }
+
+    /** Every job that has not expired yet, oldest first. */
+    @GetMapping("/jobs")
+    @ResponseBody
+    public List<PrintJobService.Status> list() {
+        return jobService.statuses();
+    }
+
+    @GetMapping("/jobs/{id}")
+    @ResponseBody
+    public ResponseEntity<PrintJobService.Status> status(@PathVariable String id) {
+        PrintJobService.Status status = jobService.status(id);
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+
+    /**
+     * Server-Sent Events: a "progress" event with the job's status now and whenever a
+     * student is merged or rendered, then one "done" or "failed" event, and the stream ends.
+     * Usage: new EventSource("/jobs/{id}/events")
+     */
+    @GetMapping(path = "/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<SseEmitter> events(@PathVariable String id) {
+        SseEmitter emitter = new SseEmitter(eventsTimeout.toMillis());
+        // Sends come from merging threads; the emitter keeps them from interleaving
+        Runnable unsubscribe = jobService.subscribe(id, status -> {
+            try {
+                emitter.send(SseEmitter.event()
+                        .name(eventName(status))
+                        .data(status, MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // the client is gone; PrintJobService drops us
+            }
+            if (status.finished()) {
+                emitter.complete();
+            }
+        });
+        if (unsubscribe == null) {
+            return ResponseEntity.notFound().build();
+        }
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * The finished file: 404 for an unknown (or expired) job, 409 while it is still running.
+     * Usage: /jobs/{id}/result, or /jobs/{id}/result?download to save it instead of opening it
+     */
+    @GetMapping("/jobs/{id}/result")
+    @ResponseBody
+    public ResponseEntity<?> result(@PathVariable String id,
+            @RequestParam(required = false) String download) {
+        PrintJobService.Status status = jobService.status(id);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Path file = jobService.result(id);
+        if (file == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Print job " + id + " is " + status.state().name().toLowerCase(Locale.ROOT));
+        }
+        logger.info("Print job {} downloaded", id);
+        boolean pdf = status.format() == PrintJobService.Format.PDF;
+        String filename = "print-" + id + (pdf ? ".pdf" : ".html");
+        ContentDisposition disposition = (download != null ? ContentDisposition.attachment()
+                : ContentDisposition.inline()).filename(filename).build();
+        Resource body = new FileSystemResource(file);
+        return ResponseEntity.ok()
+                .contentType(pdf ? MediaType.APPLICATION_PDF : MediaType.parseMediaType("text/html;charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .body(body);
+    }
+
+    // --- Helpers ---
+
+    private static String eventName(PrintJobService.Status status) {
+        return switch (status.state()) {
+            case DONE -> "done";
+            case FAILED -> "failed";
+            default -> "progress";
+        };
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, E fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + type.getSimpleName().toLowerCase(Locale.ROOT) + ": "
+                    + value);
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package com.canvas.printer.controller;
 
 import com.canvas.printer.service.QuizAutomationService;
+import com.canvas.printer.service.SyntheticAnswers;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import java.util.List;
+
 /**
  * Controller to trigger the Test Student automation.
  */
@@ -43,4 +48,23 @@ public class QuizAutomationController {
             return ResponseEntity.status(500).body("Error running automation: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Runs the Test Student through many quizzes at once and reports each one.
+     * Usage: POST /api/automate/bulk?answers=score:0.7:0.15&attempts=3
+     * with [{"courseId":"123","quizId":"456"}, ...]; both parameters are optional.
+     */
+    @PostMapping("/api/automate/bulk")
+    @ResponseBody
+    public ResponseEntity<?> runBulk(@RequestBody List<QuizAutomationService.Target> targets,
+            @RequestParam(required = false) String answers,
+            @RequestParam(defaultValue = "1") int attempts) {
+        SyntheticAnswers.Plan plan;
+        try {
+            plan = (answers != null) ? SyntheticAnswers.Plan.parse(answers) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        return ResponseEntity.ok(automationService.runBulk(targets, plan, Math.max(1, attempts)));
+    }
+}
@@ -1,22 +1,51 @@
 package com.canvas.printer.controller;
 
 import com.canvas.printer.model.PrintableQuiz;
+import com.canvas.printer.service.PrintBatch;
+import com.canvas.printer.service.PrintMetrics;
 import com.canvas.printer.service.QuizMergerService;
+import com.canvas.printer.service.QuizPdfRenderer;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @Controller
 public class QuizPrintController {
 
     private static final Logger logger = LoggerFactory.getLogger(QuizPrintController.class);
+    private static final String TEMPLATE = "quiz-print-view";
     private final QuizMergerService quizService;
+    private final QuizPdfRenderer pdfRenderer;
+    private final ITemplateEngine templateEngine;
+    private final PrintMetrics metrics;
 
-    public QuizPrintController(QuizMergerService quizService) {
+    public QuizPrintController(QuizMergerService quizService, QuizPdfRenderer pdfRenderer,
+            ITemplateEngine templateEngine, PrintMetrics metrics) {
         this.quizService = quizService;
+        this.pdfRenderer = pdfRenderer;
+        this.templateEngine = templateEngine;
+        this.metrics = metrics;
     }
 
     @GetMapping("/print/{courseId}/{quizId}/{assignId}/{submissionId}")
@@ -25,50 +54,158 @@ public class QuizPrintController {
             @PathVariable String quizId,
             @PathVariable String assignId,
             @PathVariable String submissionId,
-            Model model) {
+            Model model,
+            Locale locale,
+            HttpServletResponse response) throws IOException {
         logger.info("Request: Quiz {}, Assign {}, Student {}", quizId, assignId, submissionId);
 
-        try {
-            PrintableQuiz quizData = quizService.getPrintableQuiz(courseId, quizId, assignId, submissionId);
-
-            if (quizData == null) {
-                logger.error("Service returned null.");
-                return "error";
+        try (PrintMetrics.ServerTiming timing = metrics.startRequest()) {
+            PrintableQuiz quizData;
+            try {
+                quizData = quizService.getPrintableQuiz(courseId, quizId, assignId, submissionId);
+            } catch (Exception e) {
+                logger.error("Error generating print view", e);
+                response.setHeader("Server-Timing", timing.header());
+                return errorView(model, response, e);
             }
 
-            // --- Filter for Review Sheet ---
-            var reviewQuestions = quizData.questions().stream()
-                    .filter(q -> q.options().stream()
-                            .anyMatch(o -> o.isSelectedAndWrong() || (o.isCorrect() && !o.isSelected())))
-                    .toList();
+            logger.info("Review Sheet: Found {} questions to review.", quizData.reviewQuestions().size());
 
-            logger.info("Review Sheet: Found {} questions to review.", reviewQuestions.size());
+            // Rendered here rather than by the view resolver, so Server-Timing can include it
+            long renderStart = System.nanoTime();
+            StringWriter html = new StringWriter();
+            Context context = new Context(locale, Map.of(
+                    "documentTitle", "Result: " + quizData.studentId(),
+                    "quizzes", List.of(quizData)));
+            templateEngine.process(TEMPLATE, context, html);
+            metrics.rendered("html", renderStart);
 
-            model.addAttribute("reviewQuestions", reviewQuestions);
-            model.addAttribute("quizTitle", quizData.quizTitle());
-            model.addAttribute("quizId", quizData.quizId());
-            model.addAttribute("studentName", quizData.studentName());
-            model.addAttribute("studentId", quizData.studentId());
+            response.setHeader("Server-Timing", timing.header());
+            response.setContentType("text/html;charset=UTF-8");
+            response.getWriter().write(html.toString());
+            return null; // the response is already written
+        }
+    }
 
-            // NEW: Metadata fields
-            model.addAttribute("startedAt", quizData.startedAt());
-            model.addAttribute("finishedAt", quizData.finishedAt());
-            model.addAttribute("timeSpent", quizData.timeSpent());
-            model.addAttribute("timeLimit", quizData.timeLimit());
-            
-            model.addAttribute("attempt", quizData.attempt());
+    /**
+     * Whole-class print: one document, one sheet per student.
+     * Streamed: each sheet is written as soon as that student is merged, and the
+     * response is flushed whenever the next one is still on its way from Canvas.
+     * Usage: /print/123/456/789/all or /print/123/456/789/all?students=111,222
+     */
+    @GetMapping("/print/{courseId}/{quizId}/{assignId}/all")
+    public String printAll(
+            @PathVariable String courseId,
+            @PathVariable String quizId,
+            @PathVariable String assignId,
+            @RequestParam(required = false) List<String> students,
+            Model model,
+            Locale locale,
+            HttpServletResponse response) {
+        logger.info("Batch Request: Quiz {}, Assign {}, Students {}", quizId, assignId,
+                students == null ? "all" : students.size());
+
+        try (PrintMetrics.ServerTiming timing = metrics.startRequest()) {
+            // 1. Quiz-wide data; a failure here can still be reported as an error page
+            PrintBatch batch;
+            try {
+                batch = quizService.openPrintBatch(courseId, quizId, assignId, students);
+            } catch (Exception e) {
+                logger.error("Error generating batch print view", e);
+                response.setHeader("Server-Timing", timing.header());
+                return errorView(model, response, e);
+            }
+            // Sheets stream after the headers, so Server-Timing only covers opening the batch;
+            // per-student merges and rendering still reach the metrics
+            response.setHeader("Server-Timing", timing.header());
+
+            // 2. Stream the sheets straight into the response
+            long renderStart = System.nanoTime();
+            try (batch) {
+                response.setContentType("text/html;charset=UTF-8");
+                Writer writer = response.getWriter();
+                Context context = new Context(locale, Map.of(
+                        "documentTitle", "Results: " + batch.title(),
+                        "quizzes", batch.flushWhileWaiting(writer)));
+                templateEngine.process(TEMPLATE, context, writer);
+                metrics.rendered("html-batch", renderStart);
+            } catch (Exception e) {
+                // Headers are gone by now; all that is left is to stop
+                logger.warn("Batch print for quiz {} stopped: {}", quizId, e.getMessage());
+            }
+            return null; // the response is already written
+        }
+    }
+
+    /**
+     * Server-side PDF of one student's sheet.
+     * Usage: /pdf/123/456/789/111
+     */
+    @GetMapping("/pdf/{courseId}/{quizId}/{assignId}/{submissionId}")
+    public ResponseEntity<StreamingResponseBody> pdfQuiz(
+            @PathVariable String courseId,
+            @PathVariable String quizId,
+            @PathVariable String assignId,
+            @PathVariable String submissionId) {
+        logger.info("PDF Request: Quiz {}, Assign {}, Student {}", quizId, assignId, submissionId);
 
-            model.addAttribute("score", quizData.score());
-            model.addAttribute("questions", quizData.questions());
-            model.addAttribute("pointsPossible", quizData.pointsPossible());
-            model.addAttribute("timeLimit", quizData.timeLimit());
-            model.addAttribute("questionTypes", quizData.questionTypes());
+        try {
+            PrintableQuiz quizData = quizService.getPrintableQuiz(courseId, quizId, assignId, submissionId);
+            return pdf("quiz-" + quizId + "-" + submissionId + ".pdf",
+                    out -> pdfRenderer.render(List.of(quizData), "Result: " + quizData.studentId(), out));
+        } catch (Exception e) {
+            logger.error("Error generating PDF", e);
+            return pdfError(e);
+        }
+    }
 
-            return "quiz-print-view";
+    /**
+     * Whole-class PDF: one file, one sheet per student, streamed as it is rendered.
+     * Usage: /pdf/123/456/789/all or /pdf/123/456/789/all?students=111,222
+     */
+    @GetMapping("/pdf/{courseId}/{quizId}/{assignId}/all")
+    public ResponseEntity<StreamingResponseBody> pdfAll(
+            @PathVariable String courseId,
+            @PathVariable String quizId,
+            @PathVariable String assignId,
+            @RequestParam(required = false) List<String> students) {
+        logger.info("Batch PDF Request: Quiz {}, Assign {}, Students {}", quizId, assignId,
+                students == null ? "all" : students.size());
 
+        try {
+            PrintBatch batch = quizService.openPrintBatch(courseId, quizId, assignId, students);
+            return pdf("quiz-" + quizId + "-all.pdf", out -> {
+                try (batch) {
+                    pdfRenderer.render(batch, "Results: " + batch.title(), out);
+                }
+            });
         } catch (Exception e) {
-            logger.error("Error generating print view", e);
-            return "error";
+            logger.error("Error generating batch PDF", e);
+            return pdfError(e);
         }
     }
-}
\ No newline at end of file
+
+    private ResponseEntity<StreamingResponseBody> pdf(String filename, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.inline().filename(filename).build().toString())
+                .body(body);
+    }
+
+    private ResponseEntity<StreamingResponseBody> pdfError(Exception e) {
+        String message = "Could not build the PDF: " + e.getMessage();
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Canvas failures surface as 502 with the failing call named in the message
+    private String errorView(Model model, HttpServletResponse response, Exception e) {
+        response.setStatus(HttpStatus.BAD_GATEWAY.value());
+        model.addAttribute("status", HttpStatus.BAD_GATEWAY.value());
+        model.addAttribute("error", "Could not build the print view");
+        model.addAttribute("message", e.getMessage());
+        return "error";
+    }
+}
@@ -10,5 +10,7 @@ public record CanvasQuiz(
         long points_possible,
         int time_spent,
         int time_limit,
-        List<String> question_types) {
-}
\ No newline at end of file
+        List<String> question_types,
+        String due_at, // ISO-8601, null when the quiz has no due date
+        String lock_at) {
+}
@@ -4,6 +4,13 @@ public record CanvasSubmission(
         long id,
         long user_id,
         double score,
-        String workflow_state // e.g., "graded", "submitted"
-) {
-}
\ No newline at end of file
+        String workflow_state, // e.g., "graded", "submitted"
+        int attempt,
+        String submitted_at,
+        String graded_at) {
+
+    // Changes whenever the student resubmits or the attempt is (re)graded
+    public String fingerprint() {
+        return workflow_state + "|" + attempt + "|" + submitted_at + "|" + graded_at + "|" + score;
+    }
+}
@@ -0,0 +1,45 @@
+package com.canvas.printer.model;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Students of one course, indexed by Canvas user id.
+ * The index is a sorted long[] (binary search), so lookups never box the id.
+ */
+public record CourseRoster(
+        String courseId,
+        List<CanvasUser> users,
+        long[] sortedIds,
+        CanvasUser[] usersById, // parallel to sortedIds
+        Instant loadedAt) {
+
+    public static CourseRoster of(String courseId, List<CanvasUser> users, Instant loadedAt) {
+        CanvasUser[] byId = users.toArray(CanvasUser[]::new);
+        Arrays.sort(byId, Comparator.comparingLong(CanvasUser::id));
+        long[] ids = new long[byId.length];
+        for (int i = 0; i < byId.length; i++) {
+            ids[i] = byId[i].id();
+        }
+        return new CourseRoster(courseId, List.copyOf(users), ids, byId, loadedAt);
+    }
+
+    public CanvasUser find(long userId) {
+        int index = Arrays.binarySearch(sortedIds, userId);
+        return index >= 0 ? usersById[index] : null;
+    }
+
+    public CanvasUser find(String userId) {
+        try {
+            return find(Long.parseLong(userId));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public int size() {
+        return sortedIds.length;
+    }
+}
@@ -16,4 +16,12 @@ public record PrintableQuiz(
                 int timeLimit,
                 List<String> questionTypes,
                 List<PrintableQuestion> questions) {
-}
\ No newline at end of file
+
+        // Questions for the Retake / Correction list: answered wrong or a correct key was missed
+        public List<PrintableQuestion> reviewQuestions() {
+                return questions.stream()
+                                .filter(q -> q.options().stream()
+                                                .anyMatch(o -> o.isSelectedAndWrong() || (o.isCorrect() && !o.isSelected())))
+                                .toList();
+        }
+}
@@ -0,0 +1,24 @@
+package com.canvas.printer.model;
+
+import com.canvas.printer.service.QuizMergePlan;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The teacher-side half of a print: parsed question definitions plus quiz details,
+ * and the merge plan compiled from those questions.
+ * Only changes when the quiz is edited, which Canvas signals by bumping quiz_version.
+ */
+public record QuizDefinition(
+        String courseId,
+        String quizId,
+        int version, // UNVERSIONED until a quiz submission tells us which version this is
+        JsonNode questions,
+        CanvasQuiz quiz,
+        QuizMergePlan plan) {
+
+    public static final int UNVERSIONED = -1;
+
+    public QuizDefinition withVersion(int version) {
+        return new QuizDefinition(courseId, quizId, version, questions, quiz, plan);
+    }
+}
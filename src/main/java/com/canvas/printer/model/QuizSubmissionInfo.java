@@ -0,0 +1,17 @@
+package com.canvas.printer.model;
+
+/**
+ * Timing and version data from a student's quiz submission.
+ * Timestamps are Canvas ISO-8601 strings; any field may be null if the quiz was never started.
+ */
+public record QuizSubmissionInfo(
+        long userId,
+        String startedAt,
+        String finishedAt,
+        Integer timeSpent, // seconds
+        int quizVersion,
+        int attempt,
+        String keptScore) { // the score the assignment shows; null if not graded
+
+    public static final QuizSubmissionInfo NONE = new QuizSubmissionInfo(0, null, null, null, 0, 0, null);
+}
@@ -0,0 +1,15 @@
+package com.canvas.printer.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The parts of an assignment submission the merge reads: the latest attempt's
+ * answers plus the score. Older attempts in submission_history are not kept.
+ */
+public record StudentSubmission(
+        long userId,
+        String score,
+        int attempt,
+        JsonNode submissionData // array of { question_id, answer_id / answer_X / ... }; null if none
+) {
+}
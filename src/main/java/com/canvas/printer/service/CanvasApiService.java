@@ -3,32 +3,79 @@ package com.canvas.printer.service;
 import com.canvas.printer.model.CanvasQuiz;
 import com.canvas.printer.model.CanvasSubmission;
 import com.canvas.printer.model.CanvasUser;
+import com.canvas.printer.model.QuizSubmissionInfo;
+import com.canvas.printer.model.StudentSubmission;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
 public class CanvasApiService {
 
     private final String canvasUrl;
     private final String apiToken;
-    private final HttpClient client;
+    private final CanvasHttpClient client;
     private final ObjectMapper mapper;
+    private final CanvasResponseCache responseCache;
+    private final SubmissionStreamReader submissionReader;
+    private final PrintMetrics metrics;
+    private final boolean prefetchPages;
+    // Prefetches the next page of a paginated list while the caller works on the current one
+    private final ExecutorService pageExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     public CanvasApiService(@Value("${canvas.api.url}") String canvasUrl,
             @Value("${canvas.api.token}") String apiToken,
-            ObjectMapper mapper) {
+            @Value("${canvas.api.prefetch-pages:true}") boolean prefetchPages,
+            ObjectMapper mapper,
+            CanvasResponseCache responseCache,
+            CanvasHttpClient client,
+            PrintMetrics metrics) {
         this.canvasUrl = canvasUrl.replaceAll("/$", "");
         this.apiToken = apiToken;
-        this.client = HttpClient.newHttpClient();
+        this.client = client;
         this.mapper = mapper;
+        this.prefetchPages = prefetchPages;
+        this.responseCache = responseCache;
+        this.metrics = metrics;
+        this.submissionReader = new SubmissionStreamReader(mapper);
+    }
+
+    // Cancels in-flight page prefetches when the context closes
+    @PreDestroy
+    public void close() {
+        pageExecutor.shutdownNow();
     }
 
     // 1. Get List of Quizzes (This returns the assignment_id we need)
@@ -41,80 +88,439 @@ public class CanvasApiService {
     // 2. Get Single Quiz (NEW: To get the Title)
     public CanvasQuiz getQuiz(String courseId, String quizId) {
         String url = canvasUrl + "/api/v1/courses/" + courseId + "/quizzes/" + quizId;
-        try {
-            String json = fetchRaw(url);
-            return mapper.readValue(json, CanvasQuiz.class);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to fetch quiz details", e);
-        }
+        return fetch(url, in -> mapper.readValue(in, CanvasQuiz.class)).body();
     }
 
     // 2. Get List of Submissions (Using ASSIGNMENT Endpoint)
     public List<CanvasSubmission> getSubmissions(String courseId, String assignmentId) {
+        return streamSubmissions(courseId, assignmentId).toList();
+    }
+
+    // Lazy variant: pages are pulled from Canvas only as the stream is consumed
+    public Stream<CanvasSubmission> streamSubmissions(String courseId, String assignmentId) {
         // The Assignment endpoint returns a clean list of submissions
         String url = canvasUrl + "/api/v1/courses/" + courseId + "/assignments/" + assignmentId
                 + "/submissions?per_page=100";
-        return fetchList(url, new TypeReference<>() {
+        return streamList(url, new TypeReference<>() {
         });
     }
 
-    // 3. Get Quiz Questions (Definitions)
-    public String getQuizQuestionsJson(String courseId, String quizId) {
+    // Only the submissions handed in (submitted_since) or graded (graded_since) at or after a point in time
+    public List<CanvasSubmission> getSubmissionsSubmittedSince(String courseId, String assignmentId, Instant since) {
+        return getChangedSubmissions(courseId, assignmentId, "submitted_since", since);
+    }
+
+    public List<CanvasSubmission> getSubmissionsGradedSince(String courseId, String assignmentId, Instant since) {
+        return getChangedSubmissions(courseId, assignmentId, "graded_since", since);
+    }
+
+    // 3. Get Quiz Questions (Definitions), all pages merged into one array
+    public JsonNode getQuizQuestions(String courseId, String quizId) {
         String url = canvasUrl + "/api/v1/courses/" + courseId + "/quizzes/" + quizId + "/questions?per_page=100";
-        return fetchRaw(url);
+        ArrayNode questions = mapper.createArrayNode();
+        try (Stream<JsonNode> pages = streamList(url, new TypeReference<List<JsonNode>>() {
+        })) {
+            pages.forEach(questions::add);
+        }
+        return questions;
     }
 
     // 4. Get Single Student Submission (Using ASSIGNMENT Endpoint for rich data)
-    public String getSubmissionJson(String courseId, String assignmentId, String studentId) {
+    // Streamed: only the latest attempt's submission_data is kept from submission_history
+    public StudentSubmission getSubmission(String courseId, String assignmentId, String studentId) {
         String url = canvasUrl + "/api/v1/courses/" + courseId + "/assignments/" + assignmentId + "/submissions/"
                 + studentId + "?include[]=submission_history";
-        return fetchRaw(url);
+        return fetch(url, submissionReader::readSubmission).body();
     }
 
     // 5. Get All Users in Course (To map ID -> Name)
     public List<CanvasUser> getCourseUsers(String courseId) {
+        return streamCourseUsers(courseId).toList();
+    }
+
+    // Lazy variant: pages are pulled from Canvas only as the stream is consumed
+    public Stream<CanvasUser> streamCourseUsers(String courseId) {
         // enrollment_type[]=student ensures we only get students
         String url = canvasUrl + "/api/v1/courses/" + courseId + "/users?enrollment_type[]=student&per_page=100";
-        return fetchList(url, new TypeReference<>() {
+        return streamList(url, new TypeReference<>() {
         });
     }
 
     // 6. Get Quiz Submission (NEW: Specifically for Time Data)
     // This endpoint returns the specific Quiz Submission object which contains
     // started_at and finished_at
-    public String getQuizSubmissionJson(String courseId, String quizId, String studentId) {
+    public QuizSubmissionInfo getQuizSubmission(String courseId, String quizId, String studentId) {
         // The endpoint to list quiz submissions, filtered by user_id
         String url = canvasUrl + "/api/v1/courses/" + courseId + "/quizzes/" + quizId +
                 "/submissions?user_ids[]=" + studentId;
-        return fetchRaw(url);
+        return fetch(url, submissionReader::readFirstQuizSubmission).body();
+    }
+
+    /**
+     * Bulk variant of 4: the submissions of many students (an empty list means all of them)
+     * with their submission_history, a page of up to 100 students per request, keyed by
+     * user id. Students without a submission are missing from the map.
+     */
+    public Map<String, StudentSubmission> getSubmissions(String courseId, String assignmentId,
+            List<String> studentIds) {
+        String url = canvasUrl + "/api/v1/courses/" + courseId + "/students/submissions?assignment_ids[]="
+                + assignmentId + (studentIds.isEmpty() ? "&student_ids[]=all" : idParams("student_ids[]", studentIds))
+                + "&include[]=submission_history&per_page=100";
+        Map<String, StudentSubmission> byStudent = new HashMap<>();
+        try (Stream<StudentSubmission> submissions = streamList(url, submissionReader::readSubmissions)) {
+            submissions.forEach(s -> byStudent.put(String.valueOf(s.userId()), s));
+        }
+        return byStudent;
+    }
+
+    // Bulk variant of 6: quiz submissions for many students (empty list: all), keyed by user id
+    public Map<String, QuizSubmissionInfo> getQuizSubmissions(String courseId, String quizId,
+            List<String> studentIds) {
+        String url = canvasUrl + "/api/v1/courses/" + courseId + "/quizzes/" + quizId + "/submissions?per_page=100"
+                + idParams("user_ids[]", studentIds);
+        Map<String, QuizSubmissionInfo> byStudent = new HashMap<>();
+        try (Stream<QuizSubmissionInfo> quizSubmissions = streamList(url, submissionReader::readQuizSubmissions)) {
+            quizSubmissions.forEach(q -> byStudent.merge(String.valueOf(q.userId()), q,
+                    (a, b) -> (b.attempt() > a.attempt()) ? b : a));
+        }
+        return byStudent;
+    }
+
+    /**
+     * 7. Quiz reports. Canvas builds them in the background: create (or reuse) one, then
+     * poll it until it has a file. Both come back with include[]=file and include[]=progress.
+     */
+    public JsonNode createQuizReport(String courseId, String quizId, String reportType) {
+        String url = canvasUrl + "/api/v1/courses/" + courseId + "/quizzes/" + quizId + "/reports";
+        ObjectNode body = mapper.createObjectNode();
+        body.putObject("quiz_report").put("report_type", reportType).put("includes_all_versions", false);
+        body.putArray("include").add("file").add("progress");
+        return post(url, body.toString(), mapper::readTree);
+    }
+
+    public JsonNode getQuizReport(String courseId, String quizId, String reportId) {
+        String url = canvasUrl + "/api/v1/courses/" + courseId + "/quizzes/" + quizId + "/reports/" + reportId
+                + "?include[]=file&include[]=progress";
+        return fetch(url, mapper::readTree, false).body();
+    }
+
+    /**
+     * Streams a Canvas file (e.g. a report's file.url) into the reader. Canvas answers with a
+     * redirect to its file store; that is followed here, without the API token.
+     */
+    <T> T downloadFile(String url, BodyReader<T> reader) {
+        try {
+            HttpRequest request = client.request(url).GET().build();
+            long start = System.nanoTime();
+            HttpResponse<InputStream> response = client.send(request);
+            String endpoint = PrintMetrics.endpoint(url);
+            String location = response.headers().firstValue("Location").orElse(null);
+            if (response.statusCode() / 100 == 3 && location != null) {
+                response.body().close();
+                metrics.canvasCall(endpoint, response.statusCode(), System.nanoTime() - start, 0, 0);
+                // The file store is not Canvas: no token and no rate limiting
+                HttpRequest redirected = client.fileStoreRequest(URI.create(url).resolve(location)).GET().build();
+                start = System.nanoTime();
+                response = client.sendToFileStore(redirected);
+                endpoint = "file-store";
+            }
+            long headersAt = System.nanoTime();
+            CountingInputStream counted = new CountingInputStream(response.body());
+            try (InputStream body = counted) {
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException("Canvas file download failed " + response.statusCode() + ": "
+                            + errorText(body));
+                }
+                return reader.read(body);
+            } finally {
+                metrics.canvasCall(endpoint, response.statusCode(), headersAt - start, System.nanoTime() - headersAt,
+                        counted.count());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("HTTP Request Failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("HTTP Request Interrupted", e);
+        }
     }
 
     // --- Helpers ---
 
+    // &name=1&name=2...
+    private static String idParams(String name, List<String> ids) {
+        StringBuilder params = new StringBuilder();
+        for (String id : ids) {
+            params.append('&').append(name).append('=').append(id);
+        }
+        return params.toString();
+    }
+
+    private List<CanvasSubmission> getChangedSubmissions(String courseId, String assignmentId, String filter,
+            Instant since) {
+        String url = canvasUrl + "/api/v1/courses/" + courseId + "/students/submissions?student_ids[]=all"
+                + "&assignment_ids[]=" + assignmentId + "&" + filter + "=" + since + "&per_page=100";
+        return fetchList(url, new TypeReference<>() {
+        });
+    }
+
     private <T> List<T> fetchList(String url, TypeReference<List<T>> typeRef) {
+        try (Stream<T> items = streamList(url, typeRef)) {
+            return items.toList();
+        }
+    }
+
+    /**
+     * Follows Canvas's Link: rel="next" header. Only the page being consumed
+     * (plus, with prefetch on, the one after it) is held in memory.
+     * Close the stream when abandoning it early so a pending prefetch is cancelled.
+     */
+    private <T> Stream<T> streamList(String url, TypeReference<List<T>> typeRef) {
+        return streamList(url, in -> mapper.readValue(in, typeRef));
+    }
+
+    private <T> Stream<T> streamList(String url, BodyReader<List<T>> pageReader) {
+        PageIterator<T> pages = new PageIterator<>(url, pageReader);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED), false)
+                .onClose(pages::close);
+    }
+
+    private <T> Page<T> fetchPage(String url, BodyReader<List<T>> pageReader) {
+        CanvasResponse<List<T>> response = fetch(url, pageReader);
+        return new Page<>(response.body(), nextLink(response.link()));
+    }
+
+    // Link: <https://...&page=2>; rel="next", <https://...&page=1>; rel="first"
+    private static String nextLink(String linkHeader) {
+        if (linkHeader == null) {
+            return null;
+        }
+        for (String link : linkHeader.split(",")) {
+            String[] parts = link.split(";");
+            for (int i = 1; i < parts.length; i++) {
+                if (parts[i].trim().equals("rel=\"next\"")) {
+                    return parts[0].trim().replaceAll("^<|>$", "");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * GET with revalidation, parsed straight off the response stream.
+     * If a cached copy exists its ETag / Last-Modified are sent along and a 304 is
+     * parsed from disk; a cacheable 200 is spooled to disk and parsed from there.
+     */
+    private <T> CanvasResponse<T> fetch(String url, BodyReader<T> reader) {
+        return fetch(url, reader, true);
+    }
+
+    private <T> CanvasResponse<T> fetch(String url, BodyReader<T> reader, boolean revalidate) {
+        String cacheKey = responseCache.isEnabled() ? responseCache.key(apiToken, url) : null;
+        CanvasResponseCache.Entry cached = (cacheKey != null && revalidate) ? responseCache.lookup(cacheKey, url) : null;
         try {
-            String json = fetchRaw(url);
-            return mapper.readValue(json, typeRef);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to parse list: " + e.getMessage(), e);
+            HttpRequest.Builder builder = client.request(url).GET();
+            if (cached != null && cached.etag() != null) {
+                builder.header("If-None-Match", cached.etag());
+            }
+            if (cached != null && cached.lastModified() != null) {
+                builder.header("If-Modified-Since", cached.lastModified());
+            }
+            long start = System.nanoTime();
+            HttpResponse<InputStream> response = client.send(builder.build());
+            long headersAt = System.nanoTime();
+
+            // Counts what came over the network; a 304 is parsed from disk and counts as 0
+            CountingInputStream counted = new CountingInputStream(response.body());
+            try (InputStream body = counted) {
+                if (response.statusCode() == 304 && cached != null) {
+                    responseCache.touch(cacheKey);
+                    try (InputStream in = Files.newInputStream(cached.body())) {
+                        return new CanvasResponse<>(reader.read(in), cached.link());
+                    } catch (NoSuchFileException e) {
+                        // Trimmed between lookup and read; fetch it again in full
+                        return fetch(url, reader, false);
+                    }
+                }
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException("Canvas API Error " + response.statusCode() + ": " + errorText(body));
+                }
+
+                String link = linkHeader(response);
+                String etag = response.headers().firstValue("ETag").orElse(null);
+                String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+                if (cacheKey != null && responseCache.isCacheable(etag, lastModified)) {
+                    Path stored = responseCache.store(cacheKey, url, etag, lastModified, link, body);
+                    try (InputStream in = Files.newInputStream(stored)) {
+                        return new CanvasResponse<>(reader.read(in), link);
+                    }
+                }
+                return new CanvasResponse<>(reader.read(body), link);
+            } finally {
+                metrics.canvasCall(PrintMetrics.endpoint(url), response.statusCode(), headersAt - start,
+                        System.nanoTime() - headersAt, counted.count());
+            }
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to parse Canvas response from " + url + ": " + e.getOriginalMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("HTTP Request Failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("HTTP Request Interrupted", e);
         }
     }
 
-    private String fetchRaw(String url) {
+    // POST of a small JSON body; the response is never cached
+    private <T> T post(String url, String json, BodyReader<T> reader) {
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Authorization", "Bearer " + apiToken)
-                    .GET()
+            HttpRequest request = client.request(url)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
                     .build();
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            long start = System.nanoTime();
+            HttpResponse<InputStream> response = client.send(request);
+            long headersAt = System.nanoTime();
+            CountingInputStream counted = new CountingInputStream(response.body());
+            try (InputStream body = counted) {
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException("Canvas API Error " + response.statusCode() + ": " + errorText(body));
+                }
+                return reader.read(body);
+            } finally {
+                metrics.canvasCall(PrintMetrics.endpoint(url), response.statusCode(), headersAt - start,
+                        System.nanoTime() - headersAt, counted.count());
+            }
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to parse Canvas response from " + url + ": " + e.getOriginalMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("HTTP Request Failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("HTTP Request Interrupted", e);
+        }
+    }
+
+    // Error bodies are small; cap them anyway so a proxy's HTML page doesn't flood the log
+    private static String errorText(InputStream body) throws IOException {
+        byte[] head = body.readNBytes(2000);
+        return new String(head, StandardCharsets.UTF_8);
+    }
+
+    private static String linkHeader(HttpResponse<?> response) {
+        List<String> values = response.headers().allValues("Link");
+        return values.isEmpty() ? null : String.join(",", values);
+    }
+
+    @FunctionalInterface
+    interface BodyReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    private record CanvasResponse<T>(T body, String link) {
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long count() {
+            return count;
+        }
 
-            if (response.statusCode() != 200) {
-                throw new RuntimeException("Canvas API Error " + response.statusCode() + ": " + response.body());
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    private record Page<T>(List<T> items, String nextUrl) {
+    }
+
+    private final class PageIterator<T> implements Iterator<T>, AutoCloseable {
+        private final BodyReader<List<T>> pageReader;
+        private Iterator<T> current = Collections.emptyIterator();
+        private String nextUrl;
+        // A plain Future: cancelling it interrupts the fetching thread, which aborts the request
+        private Future<Page<T>> prefetched;
+        // The request streaming this list; prefetches add to its Server-Timing totals
+        private final PrintMetrics.ServerTiming timing = PrintMetrics.current();
+
+        private PageIterator(String firstUrl, BodyReader<List<T>> pageReader) {
+            this.nextUrl = firstUrl;
+            this.pageReader = pageReader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            // Loop, because Canvas can hand back an empty page that still has a next link
+            while (!current.hasNext() && (prefetched != null || nextUrl != null)) {
+                Page<T> page = takeNextPage();
+                current = page.items().iterator();
+                nextUrl = page.nextUrl();
+                if (prefetchPages && nextUrl != null) {
+                    String url = nextUrl;
+                    nextUrl = null;
+                    prefetched = pageExecutor.submit(
+                            () -> PrintMetrics.callWith(timing, () -> fetchPage(url, pageReader)));
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void close() {
+            if (prefetched != null) {
+                prefetched.cancel(true);
+                prefetched = null;
+            }
+        }
+
+        private Page<T> takeNextPage() {
+            if (prefetched == null) {
+                return fetchPage(nextUrl, pageReader);
+            }
+            try {
+                return prefetched.get();
+            } catch (ExecutionException e) {
+                throw (e.getCause() instanceof RuntimeException re) ? re
+                        : new RuntimeException("HTTP Request Failed: " + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                prefetched.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("HTTP Request Interrupted", e);
+            } finally {
+                prefetched = null;
             }
-            return response.body();
-        } catch (Exception e) {
-            throw new RuntimeException("HTTP Request Failed", e);
         }
     }
-}
\ No newline at end of file
+}
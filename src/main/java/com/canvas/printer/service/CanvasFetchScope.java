@@ -0,0 +1,144 @@
+package com.canvas.printer.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs a handful of Canvas calls at the same time, one virtual thread each.
+ * Shaped like StructuredTaskScope.ShutdownOnFailure (still preview in Java 21):
+ * fork the calls, join once, and the first failure or timeout cancels the rest.
+ *
+ * Usage:
+ * try (var scope = new CanvasFetchScope(timeout)) {
+ *     var quiz = scope.fork("quiz details", () -> api.getQuiz(c, q));
+ *     scope.join();
+ *     quiz.get();
+ * }
+ */
+public class CanvasFetchScope implements AutoCloseable {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CompletionService<Object> completion = new ExecutorCompletionService<>(executor);
+    private final Map<Future<Object>, Task<?>> tasks = new HashMap<>();
+    private final Duration defaultTimeout;
+    // The opening request's Server-Timing totals, which the forked calls add to
+    private final PrintMetrics.ServerTiming timing = PrintMetrics.current();
+
+    public CanvasFetchScope(Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    public <T> Supplier<T> fork(String name, Callable<T> call) {
+        return fork(name, defaultTimeout, call);
+    }
+
+    public <T> Supplier<T> fork(String name, Duration timeout, Callable<T> call) {
+        Future<Object> future = completion.submit(() -> PrintMetrics.callWith(timing, call));
+        Task<T> task = new Task<>(name, future, System.nanoTime() + timeout.toNanos(), timeout);
+        tasks.put(future, task);
+        return task;
+    }
+
+    /**
+     * Waits for every forked call. Results are taken in completion order, so a
+     * failing call is reported without waiting for the slower ones.
+     */
+    public void join() {
+        int remaining = tasks.size();
+        try {
+            while (remaining > 0) {
+                long deadline = nextDeadline();
+                Future<Object> done = (deadline == Long.MAX_VALUE)
+                        ? completion.take()
+                        : completion.poll(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+
+                if (done == null) {
+                    Task<?> late = firstExpired();
+                    if (late != null) {
+                        throw failAll("Canvas call '" + late.name + "' timed out after "
+                                + late.timeout.toMillis() + "ms", null);
+                    }
+                    continue;
+                }
+
+                remaining--;
+                try {
+                    done.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw failAll("Canvas call '" + tasks.get(done).name + "' failed: " + cause.getMessage(), cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failAll("Interrupted while waiting for Canvas", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // --- Helpers ---
+
+    private long nextDeadline() {
+        long next = Long.MAX_VALUE;
+        for (Task<?> task : tasks.values()) {
+            if (!task.future.isDone()) {
+                next = Math.min(next, task.deadlineNanos);
+            }
+        }
+        return next;
+    }
+
+    private Task<?> firstExpired() {
+        long now = System.nanoTime();
+        for (Task<?> task : tasks.values()) {
+            if (!task.future.isDone() && now - task.deadlineNanos >= 0) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private RuntimeException failAll(String message, Throwable cause) {
+        for (Future<Object> future : tasks.keySet()) {
+            future.cancel(true);
+        }
+        return new RuntimeException(message, cause);
+    }
+
+    private static final class Task<T> implements Supplier<T> {
+        private final String name;
+        private final Future<Object> future;
+        private final long deadlineNanos;
+        private final Duration timeout;
+
+        private Task(String name, Future<Object> future, long deadlineNanos, Duration timeout) {
+            this.name = name;
+            this.future = future;
+            this.deadlineNanos = deadlineNanos;
+            this.timeout = timeout;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get() {
+            if (!future.isDone()) {
+                throw new IllegalStateException("Canvas call '" + name + "' read before join()");
+            }
+            return (T) future.resultNow();
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.canvas.printer.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The one HTTP client every Canvas call goes through.
+ *
+ * - One JDK HttpClient: HTTP/2 where Canvas offers it (all calls multiplexed over one
+ *   connection), HTTP/1.1 keep-alive otherwise; gzip is asked for and decoded here.
+ * - Connect timeout, and a timeout until the response headers per endpoint
+ *   (canvas.http.request-timeout, overridden per path by canvas.http.timeouts).
+ * - Canvas calls pass through CanvasRateLimiter; GETs that fail to connect, time out
+ *   or get a 5xx are retried with jittered exponential backoff.
+ * - A circuit breaker: after canvas.http.breaker.failures failed calls in a row, calls
+ *   fail at once with {@link CanvasUnavailableException} for canvas.http.breaker.open-for,
+ *   then a single trial call decides whether to close it again.
+ */
+@Component
+public class CanvasHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(CanvasHttpClient.class);
+
+    // 200s are streamed; anything else is small and buffered so the rate limiter can inspect it
+    private static final HttpResponse.BodyHandler<InputStream> STREAM_OK_ONLY = info -> info.statusCode() == 200
+            ? HttpResponse.BodySubscribers.ofInputStream()
+            : HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(),
+                    bytes -> new ByteArrayInputStream(gunzip(info.headers(), bytes)));
+
+    private final String apiToken;
+    private final HttpClient client;
+    private final CanvasRateLimiter rateLimiter;
+    private final Duration requestTimeout;
+    private final Map<String, Duration> endpointTimeouts;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final int breakerFailures;
+    private final Duration breakerOpenFor;
+    private final Counter retries;
+
+    // Circuit breaker, guarded by breakerLock
+    private final ReentrantLock breakerLock = new ReentrantLock();
+    private int consecutiveFailures;
+    private long openUntilNanos;
+    private boolean open;
+    private boolean trialInFlight;
+
+    public CanvasHttpClient(@Value("${canvas.api.token}") String apiToken,
+            @Value("${canvas.http.connect-timeout:PT5S}") Duration connectTimeout,
+            @Value("${canvas.http.request-timeout:PT30S}") Duration requestTimeout,
+            @Value("${canvas.http.timeouts:/courses/{id}/students/submissions=PT60S,file-store=PT2M}") String timeouts,
+            @Value("${canvas.http.max-retries:2}") int maxRetries,
+            @Value("${canvas.http.retry-backoff:PT0.25S}") Duration retryBackoff,
+            @Value("${canvas.http.breaker.failures:5}") int breakerFailures,
+            @Value("${canvas.http.breaker.open-for:PT30S}") Duration breakerOpenFor,
+            CanvasRateLimiter rateLimiter,
+            MeterRegistry registry) {
+        this.apiToken = apiToken;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER) // file downloads drop the token first
+                .build();
+        this.rateLimiter = rateLimiter;
+        this.requestTimeout = requestTimeout;
+        this.endpointTimeouts = parseTimeouts(timeouts);
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        this.breakerFailures = Math.max(1, breakerFailures);
+        this.breakerOpenFor = breakerOpenFor;
+        this.retries = Counter.builder("canvas.api.retries")
+                .description("Canvas calls retried after a connection failure, timeout or 5xx")
+                .register(registry);
+        Gauge.builder("canvas.api.circuit.open", this, c -> c.isOpen() ? 1 : 0)
+                .description("1 while Canvas calls fail fast because Canvas kept failing")
+                .register(registry);
+    }
+
+    /** Thrown instead of calling Canvas while the circuit breaker is open. */
+    public static class CanvasUnavailableException extends RuntimeException {
+        public CanvasUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    /** A Canvas API request with the token, gzip and the endpoint's timeout set. */
+    public HttpRequest.Builder request(String url) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Authorization", "Bearer " + apiToken)
+                .header("Accept-Encoding", "gzip")
+                .timeout(timeout(PrintMetrics.endpoint(url)));
+    }
+
+    /** A request to Canvas's file store (where file downloads redirect): no token. */
+    public HttpRequest.Builder fileStoreRequest(URI uri) {
+        return HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Accept-Encoding", "gzip")
+                .timeout(timeout("file-store"));
+    }
+
+    /**
+     * Sends a Canvas request (see the class comment). A 200 body is streamed and must be
+     * closed; any other body is buffered. Bodies are already decompressed.
+     */
+    public HttpResponse<InputStream> send(HttpRequest request) throws IOException, InterruptedException {
+        return send(request, true);
+    }
+
+    /** Sends a file store request: retried like a Canvas GET, but not rate limited or metered by the breaker. */
+    public HttpResponse<InputStream> sendToFileStore(HttpRequest request) throws IOException, InterruptedException {
+        return send(request, false);
+    }
+
+    public boolean isOpen() {
+        breakerLock.lock();
+        try {
+            return open && System.nanoTime() < openUntilNanos;
+        } finally {
+            breakerLock.unlock();
+        }
+    }
+
+    // --- Helpers ---
+
+    private HttpResponse<InputStream> send(HttpRequest request, boolean canvas)
+            throws IOException, InterruptedException {
+        boolean idempotent = "GET".equals(request.method());
+        for (int attempt = 0;; attempt++) {
+            boolean trial = canvas && admit(request);
+            HttpResponse<InputStream> response;
+            try {
+                response = canvas ? rateLimiter.send(client, request, STREAM_OK_ONLY)
+                        : client.send(request, STREAM_OK_ONLY);
+            } catch (IOException e) {
+                if (canvas) {
+                    onFailure(trial);
+                }
+                if (!idempotent || attempt >= maxRetries) {
+                    throw e;
+                }
+                retry(request, attempt, e.toString());
+                continue;
+            } catch (InterruptedException | RuntimeException e) {
+                if (trial) {
+                    abandonTrial();
+                }
+                throw e;
+            }
+
+            if (response.statusCode() >= 500) {
+                if (canvas) {
+                    onFailure(trial);
+                }
+                if (idempotent && attempt < maxRetries) {
+                    response.body().close();
+                    retry(request, attempt, "HTTP " + response.statusCode());
+                    continue;
+                }
+                return response;
+            }
+            if (canvas) {
+                onSuccess(trial);
+            }
+            return decoded(response);
+        }
+    }
+
+    // Fails fast while open; once open-for has passed, lets one trial call through
+    private boolean admit(HttpRequest request) {
+        breakerLock.lock();
+        try {
+            if (!open) {
+                return false;
+            }
+            if (System.nanoTime() >= openUntilNanos && !trialInFlight) {
+                trialInFlight = true;
+                return true;
+            }
+        } finally {
+            breakerLock.unlock();
+        }
+        throw new CanvasUnavailableException("Canvas is failing; not calling " + request.uri().getPath()
+                + " until it recovers");
+    }
+
+    // Canvas answered; that closes the breaker even if it wasn't the trial call
+    private void onSuccess(boolean trial) {
+        breakerLock.lock();
+        try {
+            consecutiveFailures = 0;
+            if (open) {
+                open = false;
+                trialInFlight = false;
+                logger.info("Canvas circuit breaker closed");
+            }
+        } finally {
+            breakerLock.unlock();
+        }
+    }
+
+    private void onFailure(boolean trial) {
+        breakerLock.lock();
+        try {
+            consecutiveFailures++;
+            if (trial || (!open && consecutiveFailures >= breakerFailures)) {
+                open = true;
+                trialInFlight = false;
+                openUntilNanos = System.nanoTime() + breakerOpenFor.toNanos();
+                logger.warn("Canvas circuit breaker open for {} s after {} failed calls in a row",
+                        breakerOpenFor.toSeconds(), consecutiveFailures);
+            }
+        } finally {
+            breakerLock.unlock();
+        }
+    }
+
+    // The trial call ended without an answer either way (e.g. interrupted); let another one try
+    private void abandonTrial() {
+        breakerLock.lock();
+        try {
+            trialInFlight = false;
+        } finally {
+            breakerLock.unlock();
+        }
+    }
+
+    // "Equal jitter": a random delay between half and all of base * 2^attempt
+    private void retry(HttpRequest request, int attempt, String cause) throws InterruptedException {
+        long ceiling = Math.max(2, retryBackoff.toMillis() << Math.min(attempt, 10));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+        logger.warn("Canvas GET {} failed ({}); retry {} in {} ms", request.uri().getPath(), cause, attempt + 1, delay);
+        retries.increment();
+        Thread.sleep(delay);
+    }
+
+    private Duration timeout(String endpoint) {
+        return endpointTimeouts.getOrDefault(endpoint, requestTimeout);
+    }
+
+    // "/courses/{id}/students/submissions=PT60S,file-store=PT2M"
+    private static Map<String, Duration> parseTimeouts(String spec) {
+        Map<String, Duration> timeouts = new HashMap<>();
+        for (String entry : spec.split(",")) {
+            int eq = entry.lastIndexOf('=');
+            if (eq > 0) {
+                timeouts.put(entry.substring(0, eq).trim(), Duration.parse(entry.substring(eq + 1).trim()));
+            }
+        }
+        return timeouts;
+    }
+
+    // Streamed 200s are decompressed as they are read; buffered bodies already were
+    private static HttpResponse<InputStream> decoded(HttpResponse<InputStream> response) throws IOException {
+        if (response.statusCode() != 200 || !isGzip(response.headers())) {
+            return response;
+        }
+        try {
+            return new DecodedResponse(response, new GZIPInputStream(response.body(), 64 * 1024));
+        } catch (IOException e) {
+            response.body().close();
+            throw e;
+        }
+    }
+
+    private static byte[] gunzip(HttpHeaders headers, byte[] bytes) {
+        if (!isGzip(headers) || bytes.length == 0) {
+            return bytes;
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isGzip(HttpHeaders headers) {
+        return headers.firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false);
+    }
+
+    // The response with its body swapped for the decompressed stream
+    private record DecodedResponse(HttpResponse<InputStream> raw, InputStream body)
+            implements HttpResponse<InputStream> {
+
+        public int statusCode() {
+            return raw.statusCode();
+        }
+
+        public HttpRequest request() {
+            return raw.request();
+        }
+
+        public Optional<HttpResponse<InputStream>> previousResponse() {
+            return raw.previousResponse();
+        }
+
+        public HttpHeaders headers() {
+            return raw.headers();
+        }
+
+        public Optional<SSLSession> sslSession() {
+            return raw.sslSession();
+        }
+
+        public URI uri() {
+            return raw.uri();
+        }
+
+        public HttpClient.Version version() {
+            return raw.version();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.canvas.printer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One limiter for all Canvas traffic made with our token.
+ *
+ * Canvas meters each token with a leaky bucket and reports what is left in
+ * X-Rate-Limit-Remaining (X-Request-Cost is what the call just used). When the
+ * bucket runs dry it answers 403 "Rate Limit Exceeded".
+ *
+ * Concurrency is adjusted AIMD-style: +1 slot after a full window of healthy
+ * responses, halved on a throttle, cut by a quarter when the bucket (less the
+ * cost of the requests still in flight) runs low.
+ * Waiting callers are served first come, first served, and throttled requests are
+ * retried with jittered exponential backoff.
+ */
+@Component
+public class CanvasRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CanvasRateLimiter.class);
+    private static final int PEEK_BYTES = 4096;
+
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final double lowWater;
+    private final int maxRetries;
+    private final Duration backoffBase;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition slotFreed = lock.newCondition();
+    // Guarded by lock
+    private int limit;
+    private int inFlight;
+    private int healthyInWindow;
+    private long lastDecreaseNanos;
+    private double lastRemaining = Double.NaN;
+
+    public CanvasRateLimiter(@Value("${canvas.rate-limit.initial-concurrency:4}") int initialConcurrency,
+            @Value("${canvas.rate-limit.min-concurrency:1}") int minConcurrency,
+            @Value("${canvas.rate-limit.max-concurrency:16}") int maxConcurrency,
+            @Value("${canvas.rate-limit.low-water:150}") double lowWater,
+            @Value("${canvas.rate-limit.max-retries:4}") int maxRetries,
+            @Value("${canvas.rate-limit.backoff-base:PT0.5S}") Duration backoffBase) {
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.lowWater = lowWater;
+        this.maxRetries = maxRetries;
+        this.backoffBase = backoffBase;
+        this.limit = Math.max(minConcurrency, Math.min(initialConcurrency, maxConcurrency));
+        this.lastDecreaseNanos = System.nanoTime() - Duration.ofSeconds(1).toNanos();
+    }
+
+    /**
+     * Sends the request once a slot is free. A throttled 403 is retried up to
+     * canvas.rate-limit.max-retries times before being handed back to the caller.
+     */
+    public <T> HttpResponse<T> send(HttpClient client, HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        for (int attempt = 0;; attempt++) {
+            acquire();
+            HttpResponse<T> response;
+            try {
+                response = client.send(request, handler);
+            } finally {
+                release();
+            }
+
+            if (!isThrottled(response)) {
+                onResponse(response);
+                return response;
+            }
+
+            onThrottled();
+            if (attempt >= maxRetries) {
+                return response;
+            }
+            discard(response);
+            Duration delay = backoff(attempt);
+            logger.warn("Canvas throttled {} {}; retry {} in {} ms", request.method(), request.uri().getPath(),
+                    attempt + 1, delay.toMillis());
+            Thread.sleep(delay);
+        }
+    }
+
+    public int currentLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double lastRemaining() {
+        lock.lock();
+        try {
+            return lastRemaining;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // --- Helpers ---
+
+    private void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= limit) {
+                slotFreed.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            slotFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onResponse(HttpResponse<?> response) {
+        double remaining = header(response, "X-Rate-Limit-Remaining");
+        double cost = header(response, "X-Request-Cost");
+        lock.lock();
+        try {
+            if (!Double.isNaN(remaining)) {
+                lastRemaining = remaining;
+            }
+            // What the bucket will hold once the requests still in flight have been charged
+            double projected = remaining - (Double.isNaN(cost) ? 0 : cost * inFlight);
+            if (!Double.isNaN(remaining) && projected < lowWater) {
+                // Bucket draining faster than it refills: back off gently, at most once per second
+                decrease(0.75);
+                return;
+            }
+            if (++healthyInWindow >= limit && limit < maxConcurrency) {
+                healthyInWindow = 0;
+                limit++;
+                slotFreed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onThrottled() {
+        lock.lock();
+        try {
+            lastRemaining = 0;
+            decrease(0.5);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds lock
+    private void decrease(double factor) {
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos < Duration.ofSeconds(1).toNanos()) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        healthyInWindow = 0;
+        int reduced = Math.max(minConcurrency, (int) Math.floor(limit * factor));
+        if (reduced < limit) {
+            logger.info("Canvas rate limit: concurrency {} -> {} (remaining {})", limit, reduced, lastRemaining);
+            limit = reduced;
+        }
+    }
+
+    // "Equal jitter": a random delay between half and all of base * 2^attempt
+    private Duration backoff(int attempt) {
+        long ceiling = backoffBase.toMillis() << Math.min(attempt, 10);
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+    }
+
+    private static boolean isThrottled(HttpResponse<?> response) {
+        if (response.statusCode() != 403) {
+            return false;
+        }
+        if (response.body() instanceof String body && body.contains("Rate Limit Exceeded")) {
+            return true;
+        }
+        if (response.body() instanceof InputStream body && body.markSupported()
+                && peek(body).contains("Rate Limit Exceeded")) {
+            return true;
+        }
+        double remaining = header(response, "X-Rate-Limit-Remaining");
+        return !Double.isNaN(remaining) && remaining <= 0;
+    }
+
+    // Reads the start of a buffered body and rewinds it for the caller
+    private static String peek(InputStream body) {
+        try {
+            body.mark(PEEK_BYTES);
+            byte[] head = body.readNBytes(PEEK_BYTES);
+            body.reset();
+            return new String(head, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    // A streamed body holds its connection until closed
+    private static void discard(HttpResponse<?> response) throws IOException {
+        if (response.body() instanceof InputStream body) {
+            body.close();
+        }
+    }
+
+    private static double header(HttpResponse<?> response, String name) {
+        return response.headers().firstValue(name).map(value -> {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }).orElse(Double.NaN);
+    }
+}
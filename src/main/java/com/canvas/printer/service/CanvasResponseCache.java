@@ -0,0 +1,229 @@
+package com.canvas.printer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of Canvas GET responses that carry an ETag or Last-Modified.
+ * CanvasApiService revalidates entries with a conditional GET; a 304 is then
+ * served from disk, so unchanged submission_history bodies never cross the wire twice.
+ *
+ * Each entry is two files named by a hash of (token, url): KEY.body and KEY.meta.
+ * The cache survives restarts and is trimmed, least recently used first, to
+ * canvas.http-cache.max-bytes.
+ */
+@Component
+public class CanvasResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CanvasResponseCache.class);
+
+    private final boolean enabled;
+    private final Path dir;
+    private final long maxBytes;
+    private final ObjectMapper mapper;
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    public record Entry(String url, String etag, String lastModified, String link, Path body) {
+    }
+
+    private record Meta(String url, String etag, String lastModified, String link) {
+    }
+
+    public CanvasResponseCache(@Value("${canvas.http-cache.enabled:true}") boolean enabled,
+            @Value("${canvas.http-cache.dir:${java.io.tmpdir}/quiz-printer/http-cache}") Path dir,
+            @Value("${canvas.http-cache.max-bytes:536870912}") long maxBytes,
+            ObjectMapper mapper) {
+        this.enabled = enabled;
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.mapper = mapper;
+        if (enabled) {
+            try {
+                Files.createDirectories(dir);
+                deleteLeftoverParts();
+                totalBytes.set(sizeOnDisk());
+                logger.info("HTTP response cache at {} ({} bytes)", dir, totalBytes.get());
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot use HTTP cache directory " + dir, e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Entry lookup(String key, String url) {
+        if (!enabled) {
+            return null;
+        }
+        Path meta = dir.resolve(key + ".meta");
+        Path body = dir.resolve(key + ".body");
+        try {
+            if (!Files.exists(meta) || !Files.exists(body)) {
+                return null;
+            }
+            Meta m = mapper.readValue(meta.toFile(), Meta.class);
+            if (!url.equals(m.url())) {
+                return null; // hash collision, treat as a miss
+            }
+            return new Entry(m.url(), m.etag(), m.lastModified(), m.link(), body);
+        } catch (IOException e) {
+            logger.warn("Dropping unreadable cache entry {}: {}", key, e.getMessage());
+            remove(key);
+            return null;
+        }
+    }
+
+    // Marks an entry as recently used after a 304 so it survives trimming
+    public void touch(String key) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.setLastModifiedTime(dir.resolve(key + ".body"), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // Entry was trimmed concurrently; the next 200 will recreate it
+        }
+    }
+
+    public boolean isCacheable(String etag, String lastModified) {
+        return enabled && (etag != null || lastModified != null);
+    }
+
+    /**
+     * Spools a response body straight from the network into the cache and returns
+     * the cached file to parse from, so the body is never held in memory whole.
+     * Read failures are the network's and propagate; the entry is only published
+     * once the body has been written completely.
+     */
+    public Path store(String key, String url, String etag, String lastModified, String link, InputStream body)
+            throws IOException {
+        Path target = dir.resolve(key + ".body");
+        long previous = sizeOf(target);
+        long written = writeAtomically(target, body::transferTo);
+        writeAtomically(dir.resolve(key + ".meta"),
+                out -> out.write(mapper.writeValueAsBytes(new Meta(url, etag, lastModified, link))));
+        if (totalBytes.addAndGet(written - previous) > maxBytes) {
+            trim();
+        }
+        return target;
+    }
+
+    public String key(String token, String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(token.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(url.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // --- Helpers ---
+
+    // Evicts least recently used bodies until the cache is back under 90% of its cap
+    private synchronized void trim() {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        long target = maxBytes * 9 / 10;
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> bodies = files.filter(p -> p.toString().endsWith(".body"))
+                    .sorted(Comparator.comparing(CanvasResponseCache::lastModified))
+                    .toList();
+            for (Path body : bodies) {
+                if (totalBytes.get() <= target) {
+                    break;
+                }
+                String name = body.getFileName().toString();
+                remove(name.substring(0, name.length() - ".body".length()));
+            }
+        } catch (IOException e) {
+            logger.warn("Could not trim HTTP cache: {}", e.getMessage());
+        }
+    }
+
+    private void remove(String key) {
+        try {
+            Path body = dir.resolve(key + ".body");
+            long size = sizeOf(body);
+            if (Files.deleteIfExists(body)) {
+                totalBytes.addAndGet(-size);
+            }
+            Files.deleteIfExists(dir.resolve(key + ".meta"));
+        } catch (IOException e) {
+            logger.warn("Could not remove cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private long writeAtomically(Path target, Writer writer) throws IOException {
+        Path tmp = Files.createTempFile(dir, "tmp-", ".part");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                writer.write(out);
+            }
+            long size = Files.size(tmp);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return size;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // Half-written files from a crash mid-store
+    private void deleteLeftoverParts() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path part : files.filter(p -> p.toString().endsWith(".part")).toList()) {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    private long sizeOnDisk() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".body")).mapToLong(CanvasResponseCache::sizeOf).sum();
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
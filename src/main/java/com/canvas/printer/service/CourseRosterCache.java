@@ -0,0 +1,97 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.CourseRoster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Course-scoped cache of student rosters.
+ * Entries expire after canvas.roster.ttl and the least recently used course is
+ * evicted once canvas.roster.max-courses is reached.
+ */
+@Service
+public class CourseRosterCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CourseRosterCache.class);
+
+    private final CanvasApiService apiService;
+    private final Duration ttl;
+    private final int maxCourses;
+
+    // Access-ordered, so iteration order is least recently used first. Guarded by itself.
+    private final Map<String, CourseRoster> rosters;
+    // One roster download per course at a time; concurrent callers share it
+    private final Map<String, CompletableFuture<CourseRoster>> loading = new ConcurrentHashMap<>();
+
+    public CourseRosterCache(CanvasApiService apiService,
+            @Value("${canvas.roster.ttl:PT15M}") Duration ttl,
+            @Value("${canvas.roster.max-courses:50}") int maxCourses) {
+        this.apiService = apiService;
+        this.ttl = ttl;
+        this.maxCourses = maxCourses;
+        this.rosters = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CourseRoster> eldest) {
+                return size() > CourseRosterCache.this.maxCourses;
+            }
+        };
+    }
+
+    public CourseRoster get(String courseId) {
+        CourseRoster cached;
+        synchronized (rosters) {
+            cached = rosters.get(courseId);
+        }
+        if (cached != null && cached.loadedAt().plus(ttl).isAfter(Instant.now())) {
+            return cached;
+        }
+        return refresh(courseId);
+    }
+
+    public CourseRoster refresh(String courseId) {
+        CompletableFuture<CourseRoster> mine = new CompletableFuture<>();
+        CompletableFuture<CourseRoster> inFlight = loading.putIfAbsent(courseId, mine);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        try {
+            CourseRoster roster = CourseRoster.of(courseId, apiService.getCourseUsers(courseId), Instant.now());
+            synchronized (rosters) {
+                rosters.put(courseId, roster);
+            }
+            logger.info("Roster loaded for course {}: {} students", courseId, roster.size());
+            mine.complete(roster);
+            return roster;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(courseId, mine);
+        }
+    }
+
+    public void evict(String courseId) {
+        synchronized (rosters) {
+            rosters.remove(courseId);
+        }
+    }
+
+    private static CourseRoster await(CompletableFuture<CourseRoster> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw (e.getCause() instanceof RuntimeException re) ? re : e;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.canvas.printer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The ~4 MB SVG in templates/fragments/final.html, turned once at startup into a
+ * minified, gzip-precompressed static file with a content-hashed URL.
+ *
+ * Pages can opt into fragments/final-asset :: final (w, h), which renders only an
+ * img tag pointing at url(), so browsers download the drawing once and cache it.
+ * final.html is not in git; without it the asset is simply unavailable and url()
+ * returns null.
+ */
+@Component
+public class FinalSvgAsset {
+
+    private static final Logger logger = LoggerFactory.getLogger(FinalSvgAsset.class);
+    private static final String SOURCE = "templates/fragments/final.html";
+
+    private static final Pattern SVG = Pattern.compile("<svg\\b.*</svg>", Pattern.DOTALL);
+    private static final Pattern COMMENT = Pattern.compile("<!--.*?-->", Pattern.DOTALL);
+    private static final Pattern THYMELEAF_ATTR = Pattern.compile("\\s+th:[\\w:-]+=\"[^\"]*\"");
+    private static final Pattern BETWEEN_TAGS = Pattern.compile(">\\s+<");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // Only geometry is rounded; ids, classes, colours and style values keep their digits
+    private static final Pattern GEOMETRY_ATTR = Pattern.compile("(\\s(?:d|points|transform)=)(\"[^\"]*\"|'[^']*')");
+    private static final Pattern DECIMAL = Pattern.compile("(?:\\d+\\.\\d*|\\.\\d+)(?:[eE][-+]?\\d+)?");
+
+    private final byte[] svg;
+    private final byte[] gzipped;
+    private final String hash;
+
+    public FinalSvgAsset(@Value("${canvas.assets.svg-precision:2}") int precision) {
+        Resource source = new ClassPathResource(SOURCE);
+        if (!source.exists()) {
+            logger.info("{} not found; the final SVG asset is disabled", SOURCE);
+            this.svg = null;
+            this.gzipped = null;
+            this.hash = null;
+            return;
+        }
+
+        try (InputStream in = source.getInputStream()) {
+            String fragment = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            this.svg = minify(fragment, precision).getBytes(StandardCharsets.UTF_8);
+            this.gzipped = gzip(svg);
+            this.hash = sha256(svg).substring(0, 12);
+            logger.info("Final SVG asset: {} chars -> {} bytes minified, {} bytes gzipped", fragment.length(),
+                    svg.length, gzipped.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot pre-process " + SOURCE, e);
+        }
+    }
+
+    public boolean isAvailable() {
+        return svg != null;
+    }
+
+    // Changes whenever the drawing does, so the file can be cached forever
+    public String url() {
+        return isAvailable() ? "/assets/final-" + hash + ".svg" : null;
+    }
+
+    public String hash() {
+        return hash;
+    }
+
+    public byte[] svg() {
+        return svg;
+    }
+
+    public byte[] gzipped() {
+        return gzipped;
+    }
+
+    // --- Helpers ---
+
+    /**
+     * Standalone SVG from the fragment: Thymeleaf attributes and comments removed,
+     * whitespace collapsed, and the numbers in path, points and transform data rounded
+     * to the given number of decimals (the viewBox is ~1450 units wide, so 0.01 is far
+     * below a printed dot).
+     */
+    static String minify(String fragment, int precision) {
+        Matcher m = SVG.matcher(fragment);
+        if (!m.find()) {
+            throw new IllegalStateException(SOURCE + " has no <svg> element");
+        }
+        String svg = m.group();
+        svg = COMMENT.matcher(svg).replaceAll("");
+        svg = THYMELEAF_ATTR.matcher(svg).replaceAll("");
+        svg = BETWEEN_TAGS.matcher(svg).replaceAll("><");
+        svg = WHITESPACE.matcher(svg).replaceAll(" ");
+        if (precision >= 0) {
+            svg = GEOMETRY_ATTR.matcher(svg).replaceAll(attr -> Matcher.quoteReplacement(
+                    attr.group(1) + roundDecimals(attr.group(2), precision)));
+        }
+        return svg.trim();
+    }
+
+    private static String roundDecimals(String data, int precision) {
+        StringBuilder out = new StringBuilder(data.length());
+        Matcher m = DECIMAL.matcher(data);
+        int last = 0;
+        while (m.find()) {
+            out.append(data, last, m.start());
+            String rounded = new BigDecimal(m.group()).setScale(precision, RoundingMode.HALF_UP)
+                    .stripTrailingZeros().toPlainString();
+            if (rounded.equals("0") && !out.isEmpty() && out.charAt(out.length() - 1) == '-') {
+                out.setLength(out.length() - 1); // no "-0"
+            }
+            // Path data may run numbers together ("1.25.75"); keep them apart once they are rewritten
+            if (!out.isEmpty() && isNumberChar(out.charAt(out.length() - 1))) {
+                out.append(' ');
+            }
+            out.append(rounded);
+            last = m.end();
+        }
+        return out.append(data, last, data.length()).toString();
+    }
+
+    private static boolean isNumberChar(char c) {
+        return Character.isDigit(c) || c == '.';
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.PrintableQuiz;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * A whole-class print that is merged while it is being rendered.
+ *
+ * Students come out in print order, and the next few are fetched and merged ahead
+ * of the renderer. So a template iterating this sees the first sheet after one
+ * student's round trip, not after the whole class, and holds at most
+ * {@code lookahead} merged sheets. Single use; close it to cancel what is still in flight.
+ */
+public final class PrintBatch implements Iterable<PrintableQuiz>, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrintBatch.class);
+
+    private final String title;
+    private final List<String> studentIds;
+    private final Function<String, PrintableQuiz> merge;
+    private final int lookahead;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // The opening request's Server-Timing totals (null for a print job), which the merges add to
+    private final PrintMetrics.ServerTiming timing = PrintMetrics.current();
+    private Flushable output = () -> {};
+    private volatile MergeListener listener = (studentId, quiz, failure) -> {};
+    private boolean started;
+    private int printed;
+
+    /**
+     * @param merge merges one student, or returns null to leave them out of the print;
+     *              a student whose merge throws is left out too, and the cause goes to the listener
+     */
+    PrintBatch(String title, List<String> studentIds, Function<String, PrintableQuiz> merge, int lookahead) {
+        this.title = title;
+        this.studentIds = studentIds;
+        this.merge = merge;
+        this.lookahead = Math.max(1, lookahead);
+    }
+
+    public String title() {
+        return title;
+    }
+
+    public int size() {
+        return studentIds.size();
+    }
+
+    // True until a sheet is produced; read by the template after the loop
+    public boolean isEmpty() {
+        return started ? printed == 0 : studentIds.isEmpty();
+    }
+
+    /**
+     * Flushed whenever the renderer has to wait for the next student, so everything
+     * rendered so far reaches the client instead of sitting in a buffer.
+     */
+    public PrintBatch flushWhileWaiting(Flushable output) {
+        this.output = output;
+        return this;
+    }
+
+    /** Told about each student as soon as their merge finishes, from the merging thread. */
+    @FunctionalInterface
+    public interface MergeListener {
+        // quiz: null if the student is left out; failure: why, when their merge threw
+        void merged(String studentId, PrintableQuiz quiz, Throwable failure);
+    }
+
+    public PrintBatch onMerged(MergeListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    @Override
+    public Iterator<PrintableQuiz> iterator() {
+        if (started) {
+            throw new IllegalStateException("A print batch can only be iterated once");
+        }
+        started = true;
+        return new Iterator<>() {
+            private final ArrayDeque<Future<PrintableQuiz>> pending = new ArrayDeque<>();
+            private int submitted;
+            private PrintableQuiz next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    // 1. Keep the window full
+                    while (pending.size() < lookahead && submitted < studentIds.size()) {
+                        String studentId = studentIds.get(submitted++);
+                        pending.add(executor.submit(() -> PrintMetrics.callWith(timing, () -> {
+                            PrintableQuiz quiz = null;
+                            Exception failure = null;
+                            try {
+                                return quiz = merge.apply(studentId);
+                            } catch (Exception e) {
+                                // One bad submission should not sink the whole batch
+                                failure = e;
+                                logger.warn("Skipping student {} in batch print: {}", studentId, e.toString());
+                                return null;
+                            } finally {
+                                listener.merged(studentId, quiz, failure);
+                            }
+                        })));
+                    }
+                    if (pending.isEmpty()) {
+                        finish();
+                        return false;
+                    }
+
+                    // 2. Hand over what is rendered before blocking on a slow student
+                    Future<PrintableQuiz> head = pending.poll();
+                    if (!head.isDone()) {
+                        flush();
+                    }
+                    next = await(head);
+                }
+                return true;
+            }
+
+            @Override
+            public PrintableQuiz next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                PrintableQuiz quiz = next;
+                next = null;
+                printed++;
+                return quiz;
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // --- Helpers ---
+
+    private PrintableQuiz await(Future<PrintableQuiz> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while merging the batch print", e);
+        } catch (ExecutionException e) {
+            // Failing merges are caught in the task; anything else is a bug, so keep going
+            logger.warn("Skipping a student in batch print: {}", e.getCause().toString());
+            return null;
+        }
+    }
+
+    private void flush() {
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void finish() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        executor.shutdown();
+        logger.info("Batch print '{}': {} of {} students merged", title, printed, studentIds.size());
+    }
+}
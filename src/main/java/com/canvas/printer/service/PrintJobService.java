@@ -0,0 +1,427 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.PrintableQuiz;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Print jobs: a print that is queued, runs in the background and is downloaded when done,
+ * instead of holding an HTTP request open for the whole class.
+ *
+ * A job covers one or more quizzes (one student, a list, or the whole class each) and
+ * becomes a single HTML or PDF file in canvas.jobs.dir. At most canvas.jobs.workers jobs
+ * run at once; the rest wait by priority, then in order of submission, and no more than
+ * canvas.jobs.max-queued may wait. Subscribers are told whenever a student is merged or
+ * rendered. Finished jobs and their files are dropped after canvas.jobs.keep-for.
+ */
+@Service
+public class PrintJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrintJobService.class);
+    private static final String TEMPLATE = "quiz-print-view";
+
+    private final QuizMergerService quizService;
+    private final QuizPdfRenderer pdfRenderer;
+    private final ITemplateEngine templateEngine;
+    private final PrintMetrics metrics;
+    private final Path dir;
+    private final int maxQueued;
+    private final Duration keepFor;
+
+    private final ThreadPoolExecutor workers;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public PrintJobService(QuizMergerService quizService, QuizPdfRenderer pdfRenderer,
+            ITemplateEngine templateEngine, PrintMetrics metrics, MeterRegistry registry,
+            @Value("${canvas.jobs.dir:${java.io.tmpdir}/quiz-printer/jobs}") Path dir,
+            @Value("${canvas.jobs.workers:2}") int workers,
+            @Value("${canvas.jobs.max-queued:50}") int maxQueued,
+            @Value("${canvas.jobs.keep-for:PT1H}") Duration keepFor) {
+        this.quizService = quizService;
+        this.pdfRenderer = pdfRenderer;
+        this.templateEngine = templateEngine;
+        this.metrics = metrics;
+        this.dir = dir;
+        this.maxQueued = maxQueued;
+        this.keepFor = keepFor;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot use print job directory " + dir, e);
+        }
+
+        // Jobs mostly wait on Canvas, but each one holds a class's worth of merges and
+        // rendering; the worker count is what bounds that, not the thread cost
+        int size = Math.max(1, workers);
+        this.workers = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), Thread.ofVirtual().name("print-job-", 0).factory());
+
+        Gauge.builder("printer.jobs.queued", this.workers, w -> w.getQueue().size())
+                .description("Print jobs waiting for a worker")
+                .register(registry);
+        Gauge.builder("printer.jobs.running", this.workers, ThreadPoolExecutor::getActiveCount)
+                .description("Print jobs being merged and rendered")
+                .register(registry);
+    }
+
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    public enum Format {
+        HTML, PDF
+    }
+
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    /** One quiz of a job; no students means the whole class. */
+    public record Item(String courseId, String quizId, String assignId, List<String> students) {
+    }
+
+    /**
+     * Where a job stands. students is known once the job runs; each of them ends up
+     * either merged or skipped (no submission, or their merge failed). errors names
+     * each quiz that could not be opened and each student whose merge failed.
+     */
+    public record Status(String id, State state, Priority priority, Format format, int quizzes, int students,
+            int merged, int skipped, int rendered, List<String> errors, Instant queuedAt, Instant startedAt,
+            Instant finishedAt) {
+
+        public boolean finished() {
+            return state == State.DONE || state == State.FAILED;
+        }
+    }
+
+    /** Told about every change of a job's status, on whichever thread made it. */
+    @FunctionalInterface
+    public interface Subscriber {
+        void update(Status status);
+    }
+
+    /**
+     * Queues a job and returns at once.
+     *
+     * @throws RejectedExecutionException if canvas.jobs.max-queued jobs are already waiting
+     */
+    public Status submit(List<Item> items, Format format, Priority priority) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("A print job needs at least one quiz");
+        }
+        for (Item item : items) {
+            if (item.courseId() == null || item.quizId() == null || item.assignId() == null) {
+                throw new IllegalArgumentException("Every quiz needs courseId, quizId and assignId");
+            }
+        }
+        if (workers.getQueue().size() >= maxQueued) {
+            throw new RejectedExecutionException(maxQueued + " print jobs are already waiting");
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), List.copyOf(items), format, priority,
+                sequence.incrementAndGet());
+        jobs.put(job.id, job);
+        workers.execute(job);
+        logger.info("Print job {} queued: {} quizzes, {}, {} priority", job.id, items.size(), format, priority);
+        return job.status();
+    }
+
+    /** The job's status, or null if there is no such job (or it has expired). */
+    public Status status(String id) {
+        Job job = jobs.get(id);
+        return job == null ? null : job.status();
+    }
+
+    public List<Status> statuses() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparingLong(job -> job.sequence))
+                .map(Job::status)
+                .toList();
+    }
+
+    /** The finished job's file, or null unless the job is DONE. */
+    public Path result(String id) {
+        Job job = jobs.get(id);
+        return job != null && job.state == State.DONE ? job.file : null;
+    }
+
+    /**
+     * Sends the current status right away, then every change until the job finishes.
+     * A subscriber that throws is dropped.
+     *
+     * @return unsubscribes; null if there is no such job
+     */
+    public Runnable subscribe(String id, Subscriber subscriber) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return null;
+        }
+        job.subscribers.add(subscriber);
+        Status status = job.status();
+        if (!notify(job, subscriber, status) || status.finished()) {
+            job.subscribers.remove(subscriber);
+        }
+        return () -> job.subscribers.remove(subscriber);
+    }
+
+    /** Drops finished jobs, and their files, once they are older than canvas.jobs.keep-for. */
+    @Scheduled(fixedDelayString = "${canvas.jobs.cleanup-interval:PT5M}")
+    public void expire() {
+        Instant cutoff = Instant.now().minus(keepFor);
+        for (Job job : jobs.values()) {
+            Instant finishedAt = job.finishedAt;
+            if (finishedAt != null && finishedAt.isBefore(cutoff)) {
+                jobs.remove(job.id);
+                delete(job.file);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    // One print job; the executor's queue orders these by priority, then by submission
+    private final class Job implements Runnable, Comparable<Job> {
+        final String id;
+        final List<Item> items;
+        final Format format;
+        final Priority priority;
+        final long sequence;
+        final Path file;
+        final Instant queuedAt = Instant.now();
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        final List<String> errors = new CopyOnWriteArrayList<>();
+        final AtomicInteger merged = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicInteger rendered = new AtomicInteger();
+        volatile int students;
+        volatile State state = State.QUEUED;
+        volatile Instant startedAt;
+        volatile Instant finishedAt;
+
+        Job(String id, List<Item> items, Format format, Priority priority, long sequence) {
+            this.id = id;
+            this.items = items;
+            this.format = format;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.file = dir.resolve(id + (format == Format.PDF ? ".pdf" : ".html"));
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public void run() {
+            startedAt = Instant.now();
+            state = State.RUNNING;
+            publish(this);
+            try {
+                runJob(this);
+                state = State.DONE;
+            } catch (Exception e) {
+                logger.warn("Print job {} failed: {}", id, e.getMessage());
+                errors.add("Job failed: " + e.getMessage());
+                delete(file);
+                state = State.FAILED;
+            } finally {
+                finishedAt = Instant.now();
+                logger.info("Print job {} {}: {} of {} students merged, {} rendered in {} ms", id, state,
+                        merged.get(), students, rendered.get(),
+                        Duration.between(startedAt, finishedAt).toMillis());
+                publish(this);
+                subscribers.clear();
+            }
+        }
+
+        Status status() {
+            return new Status(id, state, priority, format, items.size(), students, merged.get(), skipped.get(),
+                    rendered.get(), List.copyOf(errors), queuedAt, startedAt, finishedAt);
+        }
+    }
+
+    /**
+     * A job's sheets, quiz after quiz, counting each one as rendered once the renderer
+     * asks for the next. Public only because the template reads {@code quizzes.empty}.
+     */
+    public static final class Sheets implements Iterable<PrintableQuiz> {
+        private final List<PrintBatch> batches;
+        private final Runnable onRendered;
+        private int handedOut;
+
+        Sheets(List<PrintBatch> batches, Runnable onRendered) {
+            this.batches = batches;
+            this.onRendered = onRendered;
+        }
+
+        // True until a sheet is produced; read by the template after the loop
+        public boolean isEmpty() {
+            return handedOut == 0;
+        }
+
+        @Override
+        public Iterator<PrintableQuiz> iterator() {
+            Iterator<PrintBatch> remaining = batches.iterator();
+            return new Iterator<>() {
+                private Iterator<PrintableQuiz> current = Collections.emptyIterator();
+                private boolean counted;
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext()) {
+                        if (!remaining.hasNext()) {
+                            // The last sheet is done once nothing follows it
+                            if (handedOut > 0 && !counted) {
+                                counted = true;
+                                onRendered.run();
+                            }
+                            return false;
+                        }
+                        current = remaining.next().iterator();
+                    }
+                    return true;
+                }
+
+                @Override
+                public PrintableQuiz next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    if (handedOut++ > 0) {
+                        onRendered.run();
+                    }
+                    return current.next();
+                }
+            };
+        }
+    }
+
+    // --- Helpers ---
+
+    private void runJob(Job job) throws IOException {
+        List<PrintBatch> batches = new ArrayList<>();
+        try {
+            // 1. Open every quiz up front, so the student count is known from the start
+            String title = null;
+            for (Item item : job.items) {
+                try {
+                    PrintBatch batch = quizService.openPrintBatch(item.courseId(), item.quizId(), item.assignId(),
+                            item.students());
+                    batch.onMerged((studentId, quiz, failure) -> {
+                        (quiz != null ? job.merged : job.skipped).incrementAndGet();
+                        if (failure != null) {
+                            // Subscribers can tell which sheets are missing and why
+                            job.errors.add("Quiz " + item.quizId() + ", student " + studentId + ": "
+                                    + (failure.getMessage() != null ? failure.getMessage() : failure));
+                        }
+                        publish(job);
+                    });
+                    batches.add(batch);
+                    job.students += batch.size();
+                    title = title == null ? batch.title() : title + ", " + batch.title();
+                } catch (Exception e) {
+                    logger.warn("Print job {}: quiz {} could not be opened: {}", job.id, item.quizId(),
+                            e.getMessage());
+                    job.errors.add("Quiz " + item.quizId() + ": " + e.getMessage());
+                }
+            }
+            if (batches.isEmpty()) {
+                throw new IllegalStateException("None of the quizzes could be opened");
+            }
+            publish(job);
+
+            // 2. Render them into one file, merging ahead of the renderer as /print does
+            String documentTitle = "Results: " + title;
+            Sheets sheets = new Sheets(batches, () -> {
+                job.rendered.incrementAndGet();
+                publish(job);
+            });
+            long renderStart = System.nanoTime();
+            if (job.format == Format.PDF) {
+                try (OutputStream out = Files.newOutputStream(job.file)) {
+                    pdfRenderer.render(sheets, documentTitle, out);
+                }
+            } else {
+                try (Writer out = Files.newBufferedWriter(job.file, StandardCharsets.UTF_8)) {
+                    templateEngine.process(TEMPLATE, new Context(Locale.getDefault(),
+                            Map.of("documentTitle", documentTitle, "quizzes", sheets)), out);
+                }
+                metrics.rendered("html-job", renderStart);
+            }
+        } finally {
+            for (PrintBatch batch : batches) {
+                batch.close();
+            }
+        }
+    }
+
+    private void publish(Job job) {
+        if (job.subscribers.isEmpty()) {
+            return;
+        }
+        Status status = job.status();
+        for (Subscriber subscriber : job.subscribers) {
+            if (!notify(job, subscriber, status)) {
+                job.subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private static boolean notify(Job job, Subscriber subscriber, Status status) {
+        try {
+            subscriber.update(status);
+            return true;
+        } catch (Exception e) {
+            logger.debug("Dropping a subscriber of print job {}: {}", job.id, e.getMessage());
+            return false;
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.canvas.printer.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Where a print's time goes, stage by stage, with histogram buckets for Prometheus:
+ * - canvas.api.requests: a Canvas call until its response headers (Canvas's own latency)
+ * - canvas.api.read: streaming and parsing that response's body
+ * - canvas.api.response.size: bytes read per call
+ * - print.merge: the merge phases (fetch, version, merge, store)
+ * - print.render: turning merged sheets into HTML
+ *
+ * Canvas calls are tagged with their path, ids replaced by {id}. The same stages are also
+ * added up per request for the Server-Timing header of /print (see {@link #startRequest()}).
+ */
+@Component
+public class PrintMetrics {
+
+    private static final Pattern ID_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+
+    // Each request's totals, on the thread serving it. Not inherited: pooled threads created during a
+    // request would keep it; the threads a request forks are handed it with callWith()
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+
+    public PrintMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** One Canvas call: until headers, then the body read, and its size. See {@link #endpoint(String)}. */
+    public void canvasCall(String endpoint, int status, long headersNanos, long readNanos, long bytes) {
+        String statusTag = String.valueOf(status);
+        Timer.builder("canvas.api.requests")
+                .description("Canvas API calls, until the response headers arrive")
+                .tags("endpoint", endpoint, "status", statusTag)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(headersNanos, TimeUnit.NANOSECONDS);
+        Timer.builder("canvas.api.read")
+                .description("Streaming and parsing Canvas response bodies")
+                .tags("endpoint", endpoint, "status", statusTag)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(readNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("canvas.api.response.size")
+                .description("Canvas response body size")
+                .baseUnit("bytes")
+                .tags("endpoint", endpoint)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(bytes);
+        addToRequest("canvas", headersNanos);
+        addToRequest("parse", readNanos);
+    }
+
+    /** A merge phase that started at startNanos (System.nanoTime) and has just ended. */
+    public void mergePhase(String phase, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        Timer.builder("print.merge")
+                .description("Merge phases of a printed sheet")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        addToRequest(phase, nanos);
+    }
+
+    /** Rendering of a view ("html", "html-batch") that started at startNanos. */
+    public void rendered(String view, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        Timer.builder("print.render")
+                .description("Rendering merged sheets")
+                .tag("view", view)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        addToRequest("render", nanos);
+    }
+
+    /**
+     * Starts adding up stages for the current request. Close it when the request is done.
+     * Stages running in parallel (e.g. several Canvas calls) are summed, so a stage can
+     * exceed the request's wall time.
+     */
+    public ServerTiming startRequest() {
+        ServerTiming timing = new ServerTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    /** The current request's totals, or null outside one; captured by code that forks threads. */
+    public static ServerTiming current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Calls task, adding its stages to timing (null: to nothing). For the threads a request
+     * forks: CanvasFetchScope calls, PrintBatch lookahead, page prefetches.
+     */
+    public static <T> T callWith(ServerTiming timing, Callable<T> task) throws Exception {
+        ServerTiming previous = CURRENT.get();
+        if (timing == previous) {
+            return task.call();
+        }
+        CURRENT.set(timing);
+        try {
+            return task.call();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /** Per-stage totals of one request, formatted as a Server-Timing header. */
+    public static final class ServerTiming implements AutoCloseable {
+        private final Map<String, LongAdder> nanos = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+        void add(String stage, long stageNanos) {
+            nanos.computeIfAbsent(stage, k -> new LongAdder()).add(stageNanos);
+            counts.computeIfAbsent(stage, k -> new LongAdder()).increment();
+        }
+
+        // canvas;dur=123.4;desc="12 calls", merge;dur=5.1;desc="1 calls"
+        public String header() {
+            StringBuilder header = new StringBuilder();
+            for (String stage : new String[] { "canvas", "parse", "fetch", "version", "merge", "store", "render" }) {
+                LongAdder total = nanos.get(stage);
+                if (total == null) {
+                    continue;
+                }
+                if (!header.isEmpty()) {
+                    header.append(", ");
+                }
+                header.append(stage)
+                        .append(";dur=").append(String.format(Locale.ROOT, "%.1f", total.sum() / 1e6))
+                        .append(";desc=\"").append(counts.get(stage).sum()).append(" calls\"");
+            }
+            return header.toString();
+        }
+
+        @Override
+        public void close() {
+            if (CURRENT.get() == this) {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    // --- Helpers ---
+
+    private static void addToRequest(String stage, long nanos) {
+        ServerTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.add(stage, nanos);
+        }
+    }
+
+    // https://x.instructure.com/api/v1/courses/1/quizzes/2/submissions?page=3 -> /courses/{id}/quizzes/{id}/submissions
+    public static String endpoint(String url) {
+        String path = URI.create(url).getPath();
+        if (path == null) {
+            return "unknown";
+        }
+        return ID_SEGMENT.matcher(path.replaceFirst("^/api/v1", "")).replaceAll("/{id}");
+    }
+}
@@ -0,0 +1,275 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.CanvasQuiz;
+import com.canvas.printer.model.CanvasSubmission;
+import com.canvas.printer.model.PrintableQuiz;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges every student's sheet in the background so that the rush of print
+ * requests right after an exam is served from PrintableQuizStore instead of Canvas.
+ *
+ * Every canvas.precompute.interval it lists the quizzes of the watched courses
+ * (canvas.precompute.watch: "courseId" for every quiz, "courseId/quizId" for one)
+ * and their submissions. Students with a new or regraded submission are merged in
+ * bulk per quiz, at most canvas.precompute.concurrency quizzes at a time. A quiz
+ * stays watched until canvas.precompute.window after its lock/due date (quizzes
+ * without one are always watched); submissions come from SubmissionIndex, so a
+ * quiet quiz costs two small incremental listings per scan.
+ * Progress is exposed by the "precompute" actuator endpoint and printer.precompute.* gauges.
+ */
+@Service
+public class PrintPrecomputeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrintPrecomputeService.class);
+
+    private final CanvasApiService apiService;
+    private final SubmissionIndex submissionIndex;
+    private final QuizMergerService mergerService;
+    private final PrintableQuizStore quizStore;
+    private final Map<String, Set<String>> watch; // courseId -> quizIds, empty = every quiz
+    private final Duration window;
+    private final int concurrency;
+
+    private final Queue<Job> queue = new ConcurrentLinkedQueue<>();
+    // Students waiting for a merge, whether still in the queue or grouped and waiting for the budget
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+    private volatile Instant lastScan;
+    private volatile Duration lastScanTook;
+
+    public PrintPrecomputeService(CanvasApiService apiService, SubmissionIndex submissionIndex,
+            QuizMergerService mergerService,
+            PrintableQuizStore quizStore, MeterRegistry registry,
+            @Value("${canvas.precompute.watch:}") List<String> watch,
+            @Value("${canvas.precompute.window:P2D}") Duration window,
+            @Value("${canvas.precompute.concurrency:4}") int concurrency) {
+        this.apiService = apiService;
+        this.submissionIndex = submissionIndex;
+        this.mergerService = mergerService;
+        this.quizStore = quizStore;
+        this.watch = parseWatch(watch);
+        this.window = window;
+        this.concurrency = Math.max(1, concurrency);
+
+        Gauge.builder("printer.precompute.queue", queued, AtomicInteger::get)
+                .description("Students waiting to be merged in the background")
+                .register(registry);
+        Gauge.builder("printer.precompute.in-flight", inFlight, AtomicInteger::get)
+                .description("Background merges currently running")
+                .register(registry);
+        Gauge.builder("printer.precompute.sheets", quizStore, PrintableQuizStore::size)
+                .description("Precomputed sheets held in memory")
+                .register(registry);
+    }
+
+    private record Job(String courseId, String quizId, String assignId, String studentId, String fingerprint) {
+    }
+
+    // Per-quiz counters from the latest scan, updated as its merges finish
+    private static final class Progress {
+        final String courseId;
+        final String quizId;
+        volatile String title;
+        volatile String closesAt;
+        volatile String state = "waiting";
+        volatile int submitted;
+        final AtomicInteger ready = new AtomicInteger();
+
+        Progress(String courseId, String quizId) {
+            this.courseId = courseId;
+            this.quizId = quizId;
+        }
+    }
+
+    public record QuizStatus(String courseId, String quizId, String title, String closesAt, String state,
+            int submitted, int ready) {
+    }
+
+    public record Status(boolean enabled, Instant lastScan, Duration lastScanTook, int queued, int inFlight,
+            long merged, long failed, int sheets, List<QuizStatus> quizzes) {
+    }
+
+    @Scheduled(initialDelayString = "${canvas.precompute.initial-delay:PT10S}",
+            fixedDelayString = "${canvas.precompute.interval:PT1M}")
+    public void scan() {
+        if (watch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        // 1. Queue every student whose submission changed since it was last merged
+        for (Map.Entry<String, Set<String>> course : watch.entrySet()) {
+            try {
+                for (CanvasQuiz quiz : apiService.getQuizzes(course.getKey())) {
+                    String quizId = String.valueOf(quiz.id());
+                    if (course.getValue().isEmpty() || course.getValue().contains(quizId)) {
+                        scanQuiz(course.getKey(), quiz);
+                    }
+                }
+            } catch (Exception e) {
+                logger.warn("Precompute scan of course {} failed: {}", course.getKey(), e.getMessage());
+            }
+        }
+
+        // 2. Merge them within the concurrency budget (the next scan waits for this)
+        int students = queue.size();
+        drain();
+
+        lastScan = Instant.now();
+        lastScanTook = Duration.ofNanos(System.nanoTime() - start);
+        if (students > 0) {
+            logger.info("Precompute: merged {} students in {} ms ({} sheets stored)", students,
+                    lastScanTook.toMillis(), quizStore.size());
+        }
+    }
+
+    public Status status() {
+        List<QuizStatus> quizzes = new ArrayList<>();
+        for (Progress p : progress.values()) {
+            quizzes.add(new QuizStatus(p.courseId, p.quizId, p.title, p.closesAt, p.state, p.submitted,
+                    p.ready.get()));
+        }
+        return new Status(!watch.isEmpty(), lastScan, lastScanTook, queued.get(), inFlight.get(), merged.get(),
+                failed.get(), quizStore.size(), quizzes);
+    }
+
+    // --- Helpers ---
+
+    private void scanQuiz(String courseId, CanvasQuiz quiz) {
+        String quizId = String.valueOf(quiz.id());
+        Progress p = progress.computeIfAbsent(courseId + "/" + quizId, k -> new Progress(courseId, quizId));
+        p.title = quiz.title();
+        p.closesAt = (quiz.lock_at() != null) ? quiz.lock_at() : quiz.due_at();
+
+        if (quiz.assignment_id() == 0) {
+            p.state = "ungraded"; // practice quizzes and surveys have no submissions to print
+            return;
+        }
+        if (p.closesAt != null && Instant.parse(p.closesAt).plus(window).isBefore(Instant.now())) {
+            p.state = "closed";
+            return;
+        }
+        p.state = (p.closesAt != null && Instant.parse(p.closesAt).isBefore(Instant.now())) ? "due" : "open";
+
+        String assignId = String.valueOf(quiz.assignment_id());
+        int submitted = 0;
+        int ready = 0;
+        for (CanvasSubmission s : submissionIndex.getSubmissions(courseId, assignId)) {
+            if ("unsubmitted".equals(s.workflow_state())) {
+                continue;
+            }
+            submitted++;
+            String studentId = String.valueOf(s.user_id());
+            if (quizStore.confirm(courseId, quizId, studentId, s.fingerprint())) {
+                ready++;
+            } else {
+                queue.add(new Job(courseId, quizId, assignId, studentId, s.fingerprint()));
+                queued.incrementAndGet();
+            }
+        }
+        p.submitted = submitted;
+        p.ready.set(ready);
+    }
+
+    private void drain() {
+        // One bulk merge per quiz, so N students cost a few listings instead of 2N calls
+        Map<String, List<Job>> byQuiz = new LinkedHashMap<>();
+        Job job;
+        while ((job = queue.poll()) != null) {
+            byQuiz.computeIfAbsent(job.courseId() + "/" + job.quizId(), k -> new ArrayList<>()).add(job);
+        }
+
+        Semaphore budget = new Semaphore(concurrency);
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (List<Job> jobs : byQuiz.values()) {
+                budget.acquireUninterruptibly();
+                workers.submit(() -> {
+                    // Queued until a worker takes them, so the gauges add up while the budget is full
+                    queued.addAndGet(-jobs.size());
+                    inFlight.addAndGet(jobs.size());
+                    try {
+                        merge(jobs);
+                    } finally {
+                        inFlight.addAndGet(-jobs.size());
+                        budget.release();
+                    }
+                });
+            }
+        }
+    }
+
+    // Jobs of one quiz
+    private void merge(List<Job> jobs) {
+        Job first = jobs.get(0);
+        Map<String, PrintableQuiz> sheets;
+        try {
+            sheets = mergerService.mergePrintableQuizzes(first.courseId(), first.quizId(), first.assignId(),
+                    jobs.stream().map(Job::studentId).toList());
+        } catch (Exception e) {
+            sheets = Map.of();
+            logger.warn("Precompute of quiz {} failed: {}", first.quizId(), e.getMessage());
+        }
+
+        Progress p = progress.get(first.courseId() + "/" + first.quizId());
+        for (Job job : jobs) {
+            PrintableQuiz sheet = sheets.get(job.studentId());
+            if (sheet == null) {
+                // Picked up again on the next scan, since the store still lacks this fingerprint
+                failed.incrementAndGet();
+                continue;
+            }
+            quizStore.put(job.courseId(), job.quizId(), job.studentId(), job.fingerprint(), sheet);
+            merged.incrementAndGet();
+            if (p != null) {
+                p.ready.incrementAndGet();
+            }
+        }
+    }
+
+    private static Map<String, Set<String>> parseWatch(List<String> entries) {
+        Map<String, Set<String>> courses = new LinkedHashMap<>();
+        Set<String> wholeCourses = new LinkedHashSet<>();
+        for (String entry : entries) {
+            String[] parts = entry.trim().split("/");
+            if (parts[0].isBlank()) {
+                continue;
+            }
+            Set<String> quizzes = courses.computeIfAbsent(parts[0], k -> new LinkedHashSet<>());
+            if (parts.length > 1) {
+                quizzes.add(parts[1]);
+            } else {
+                wholeCourses.add(parts[0]);
+            }
+        }
+        // A whole course wins over single quizzes of it
+        wholeCourses.forEach(courseId -> courses.get(courseId).clear());
+        return courses;
+    }
+}
@@ -0,0 +1,181 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.PrintableOption;
+import com.canvas.printer.model.PrintableQuestion;
+import com.canvas.printer.model.PrintableQuiz;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of one snapshot: its key followed by the merged sheet.
+ * Strings are a length-prefixed UTF-8 run (-1 for null) rather than writeUTF,
+ * because question HTML with inline images easily exceeds writeUTF's 64 KB limit.
+ * Bump VERSION whenever the layout changes; older records are then skipped.
+ */
+final class PrintSnapshotCodec {
+
+    static final int VERSION = 2;
+
+    // score: the grade printed on the sheet, so a regrade of the same attempt is noticed
+    record Key(String courseId, String quizId, String studentId, int attempt, int quizVersion, String score) {
+    }
+
+    record Snapshot(Key key, PrintableQuiz quiz) {
+    }
+
+    private PrintSnapshotCodec() {
+    }
+
+    static byte[] encode(Key key, PrintableQuiz quiz) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            writeKey(out, key);
+
+            writeString(out, quiz.quizId());
+            writeString(out, quiz.studentId());
+            writeString(out, quiz.quizTitle());
+            writeString(out, quiz.studentName());
+            writeString(out, quiz.score());
+            writeString(out, quiz.startedAt());
+            writeString(out, quiz.finishedAt());
+            writeString(out, quiz.timeSpent());
+            out.writeInt(quiz.attempt());
+            out.writeLong(quiz.pointsPossible());
+            out.writeInt(quiz.timeLimit());
+            writeStrings(out, quiz.questionTypes());
+
+            out.writeInt(quiz.questions().size());
+            for (PrintableQuestion q : quiz.questions()) {
+                out.writeInt(q.questionNumber());
+                writeString(out, q.questionHtml());
+                writeString(out, q.feedbackText());
+                out.writeBoolean(q.isUnanswered());
+                out.writeInt(q.options().size());
+                for (PrintableOption o : q.options()) {
+                    writeString(out, o.text());
+                    out.writeByte((o.isCorrect() ? 1 : 0) | (o.isSelected() ? 2 : 0) | (o.isSelectedAndWrong() ? 4 : 0));
+                    writeString(out, o.feedback());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory streams don't fail
+        }
+        return bytes.toByteArray();
+    }
+
+    // Just the key, without decoding the sheet; null if the record has another layout version
+    static Key decodeKey(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        return (in.readByte() == VERSION) ? readKey(in) : null;
+    }
+
+    static Snapshot decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        if (in.readByte() != VERSION) {
+            return null;
+        }
+        Key key = readKey(in);
+
+        String quizId = readString(in);
+        String studentId = readString(in);
+        String quizTitle = readString(in);
+        String studentName = readString(in);
+        String score = readString(in);
+        String startedAt = readString(in);
+        String finishedAt = readString(in);
+        String timeSpent = readString(in);
+        int attempt = in.readInt();
+        long pointsPossible = in.readLong();
+        int timeLimit = in.readInt();
+        List<String> questionTypes = readStrings(in);
+
+        int questionCount = in.readInt();
+        List<PrintableQuestion> questions = new ArrayList<>(questionCount);
+        for (int i = 0; i < questionCount; i++) {
+            int number = in.readInt();
+            String html = readString(in);
+            String feedbackText = readString(in);
+            boolean unanswered = in.readBoolean();
+            int optionCount = in.readInt();
+            List<PrintableOption> options = new ArrayList<>(optionCount);
+            for (int j = 0; j < optionCount; j++) {
+                String text = readString(in);
+                int flags = in.readByte();
+                options.add(new PrintableOption(text, (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0,
+                        readString(in)));
+            }
+            questions.add(new PrintableQuestion(number, html, options, feedbackText, unanswered));
+        }
+
+        return new Snapshot(key, new PrintableQuiz(quizId, studentId, quizTitle, studentName, score, startedAt,
+                finishedAt, timeSpent, attempt, pointsPossible, timeLimit, questionTypes, questions));
+    }
+
+    // --- Helpers ---
+
+    private static void writeKey(DataOutput out, Key key) throws IOException {
+        writeString(out, key.courseId());
+        writeString(out, key.quizId());
+        writeString(out, key.studentId());
+        out.writeInt(key.attempt());
+        out.writeInt(key.quizVersion());
+        writeString(out, key.score());
+    }
+
+    private static Key readKey(DataInput in) throws IOException {
+        return new Key(readString(in), readString(in), readString(in), in.readInt(), in.readInt(), readString(in));
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutput out, List<String> list) throws IOException {
+        if (list == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(list.size());
+        for (String s : list) {
+            writeString(out, s);
+        }
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readString(in));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,420 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.PrintableQuiz;
+import com.canvas.printer.service.PrintSnapshotCodec.Key;
+import com.canvas.printer.service.PrintSnapshotCodec.Snapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Merged sheets persisted on local disk, so reprinting an unchanged submission
+ * needs neither its submission_history nor the quiz definitions, even after a restart.
+ *
+ * Snapshots are keyed by (course, quiz, student, attempt, quiz_version) and also record
+ * the score they print, so a manual regrade of the same attempt (essays, fudge points)
+ * is not served from an old sheet; only the newest one per student is kept. They are
+ * appended to segment files (segment-NNNNNN.qps) as [length][crc32][PrintSnapshotCodec
+ * record], and an in-memory index, grouped by quiz so a batch print finds the whole
+ * class in one lookup, points at each live record. The index is rebuilt by scanning the
+ * segments at startup; a torn record at the end of the newest segment (crash mid-write)
+ * is cut off, and a corrupt one in an older segment is skipped. Superseded records are
+ * garbage, and segments that are mostly garbage are rewritten by compact().
+ */
+@Component
+public class PrintSnapshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrintSnapshotStore.class);
+    private static final int HEADER_BYTES = 8; // length + crc32
+
+    private final boolean enabled;
+    private final Path dir;
+    private final long segmentBytes;
+    private final double compactRatio;
+
+    // Everything below is guarded by lock: reads share it, appends and compaction take it exclusively
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Map<String, Map<String, Ref>> index = new HashMap<>(); // "course/quiz" -> studentId -> newest
+    private Segment active;
+
+    /**
+     * Where the newest snapshot of one student lives. attempt, quizVersion and score are
+     * kept here so callers can check freshness without reading the record.
+     */
+    public record Ref(int attempt, int quizVersion, String score, int segment, long offset, int length) {
+
+        /** Merged from this attempt and quiz version, and graded the same since. */
+        public boolean isCurrent(int attempt, int quizVersion, String score) {
+            return this.attempt == attempt && this.quizVersion == quizVersion && sameScore(this.score, score);
+        }
+    }
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        long size;
+        long liveBytes;
+
+        Segment(int id, Path path, FileChannel channel, long size) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+    }
+
+    public PrintSnapshotStore(@Value("${canvas.snapshots.enabled:true}") boolean enabled,
+            @Value("${canvas.snapshots.dir:${java.io.tmpdir}/quiz-printer/snapshots}") Path dir,
+            @Value("${canvas.snapshots.segment-bytes:16777216}") long segmentBytes,
+            @Value("${canvas.snapshots.compact-ratio:0.5}") double compactRatio) {
+        this.enabled = enabled;
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.compactRatio = compactRatio;
+        if (enabled) {
+            try {
+                Files.createDirectories(dir);
+                load();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot use snapshot directory " + dir, e);
+            }
+        }
+    }
+
+    /**
+     * The stored sheet for exactly this attempt, quiz version and score, or null.
+     */
+    public PrintableQuiz get(String courseId, String quizId, String studentId, int attempt, int quizVersion,
+            String score) {
+        Ref ref = latest(courseId, quizId, studentId);
+        if (ref == null || !ref.isCurrent(attempt, quizVersion, score)) {
+            return null;
+        }
+        return read(ref);
+    }
+
+    /**
+     * Whether two Canvas scores are the same grade: "4", "4.0" and 4.0 are; no score at
+     * all (not graded yet) counts as 0, which is what an ungraded sheet prints.
+     */
+    public static boolean sameScore(String a, String b) {
+        String left = (a == null || a.isBlank()) ? "0" : a.trim();
+        String right = (b == null || b.isBlank()) ? "0" : b.trim();
+        try {
+            return new BigDecimal(left).compareTo(new BigDecimal(right)) == 0;
+        } catch (NumberFormatException e) {
+            return left.equals(right);
+        }
+    }
+
+    // Newest snapshot of one student, whatever its attempt and version, or null
+    public Ref latest(String courseId, String quizId, String studentId) {
+        if (!enabled) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return index.getOrDefault(quizKey(courseId, quizId), Map.of()).get(studentId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Newest snapshot of every student of a quiz, for batch prints to check
+     * against the submissions listing before reading any record.
+     */
+    public Map<String, Ref> quiz(String courseId, String quizId) {
+        if (!enabled) {
+            return Map.of();
+        }
+        lock.readLock().lock();
+        try {
+            return Map.copyOf(index.getOrDefault(quizKey(courseId, quizId), Map.of()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public PrintableQuiz read(Ref ref) {
+        if (!enabled) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            Segment segment = segments.get(ref.segment());
+            if (segment == null) {
+                return null; // compacted away since the caller looked it up
+            }
+            Snapshot snapshot = PrintSnapshotCodec.decode(readRecord(segment, ref.offset(), ref.length()));
+            return (snapshot != null) ? snapshot.quiz() : null;
+        } catch (IOException e) {
+            logger.warn("Unreadable snapshot in segment {}: {}", ref.segment(), e.getMessage());
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String courseId, String quizId, String studentId, int attempt, int quizVersion,
+            PrintableQuiz quiz) {
+        if (!enabled) {
+            return;
+        }
+        byte[] record = PrintSnapshotCodec.encode(
+                new Key(courseId, quizId, studentId, attempt, quizVersion, quiz.score()), quiz);
+        lock.writeLock().lock();
+        try {
+            Ref ref = append(record);
+            replace(quizKey(courseId, quizId), studentId, new Ref(attempt, quizVersion, quiz.score(), ref.segment(),
+                    ref.offset(), ref.length()));
+        } catch (IOException e) {
+            // A lost snapshot only costs a Canvas round trip next time
+            logger.warn("Could not store snapshot for student {} (quiz {}): {}", studentId, quizId, e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites every full segment whose live share has dropped below
+     * canvas.snapshots.compact-ratio: its live records are copied to the end of the
+     * active segment and the file is deleted.
+     */
+    @Scheduled(initialDelayString = "${canvas.snapshots.compact-interval:PT15M}",
+            fixedDelayString = "${canvas.snapshots.compact-interval:PT15M}")
+    public void compact() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            List<Segment> candidates = new ArrayList<>();
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.liveBytes < segment.size * compactRatio) {
+                    candidates.add(segment);
+                }
+            }
+            if (candidates.isEmpty()) {
+                return;
+            }
+
+            long reclaimed = 0;
+            for (Segment segment : candidates) {
+                // 1. Move the live records out
+                for (Map.Entry<String, Map<String, Ref>> quiz : index.entrySet()) {
+                    for (Map.Entry<String, Ref> student : quiz.getValue().entrySet()) {
+                        Ref ref = student.getValue();
+                        if (ref.segment() == segment.id) {
+                            Ref moved = append(readRecord(segment, ref.offset(), ref.length()));
+                            student.setValue(new Ref(ref.attempt(), ref.quizVersion(), ref.score(),
+                                    moved.segment(), moved.offset(), moved.length()));
+                        }
+                    }
+                }
+                // 2. Then drop the file, once the copies are on disk
+                active.channel.force(false);
+                reclaimed += segment.size - segment.liveBytes;
+                segments.remove(segment.id);
+                segment.channel.close();
+                Files.delete(segment.path);
+            }
+            logger.info("Snapshot compaction: {} segments rewritten, {} bytes reclaimed", candidates.size(),
+                    reclaimed);
+        } catch (IOException e) {
+            logger.warn("Snapshot compaction failed: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            segments.clear();
+        } catch (IOException e) {
+            logger.warn("Could not close snapshot segments: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Helpers ---
+
+    private void load() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(p -> p.getFileName().toString().matches("segment-\\d+\\.qps")).sorted().toList();
+        }
+
+        int records = 0;
+        for (Path path : files) {
+            int id = Integer.parseInt(path.getFileName().toString().replaceAll("\\D", ""));
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(id, path, channel, channel.size());
+            segments.put(id, segment);
+            boolean newest = path.equals(files.get(files.size() - 1));
+
+            // Replay in write order; a later record for the same student supersedes the earlier one
+            long offset = 0;
+            while (offset < segment.size) {
+                byte[] record = readRecordAt(segment, offset);
+                if (record == null && newest) {
+                    // Only the segment being appended to can have a torn tail (crash mid-write)
+                    logger.warn("Snapshot segment {} is torn at byte {}; truncating", path.getFileName(), offset);
+                    channel.truncate(offset);
+                    segment.size = offset;
+                    break;
+                }
+                if (record == null) {
+                    // A sealed segment was complete once: step over a bad record if its length can
+                    // be trusted, otherwise keep what was read and leave the rest to compaction
+                    int skip = recordLength(segment, offset);
+                    logger.warn("Snapshot segment {} has a corrupt record at byte {}; {}", path.getFileName(),
+                            offset, (skip < 0) ? "ignoring the rest of it" : "skipping it");
+                    if (skip < 0) {
+                        break;
+                    }
+                    offset += skip;
+                    continue;
+                }
+                int length = HEADER_BYTES + record.length;
+                Key key = PrintSnapshotCodec.decodeKey(record);
+                if (key != null) {
+                    segment.liveBytes += length;
+                    replace(quizKey(key.courseId(), key.quizId()), key.studentId(),
+                            new Ref(key.attempt(), key.quizVersion(), key.score(), id, offset, length));
+                    records++;
+                }
+                offset += length;
+            }
+        }
+
+        active = segments.isEmpty() ? newSegment(1) : segments.lastEntry().getValue();
+        int students = index.values().stream().mapToInt(Map::size).sum();
+        logger.info("Snapshot store at {}: {} segments, {} records, {} live", dir, segments.size(), records,
+                students);
+    }
+
+    // Points the index at a new record and writes off the one it replaces
+    private void replace(String quizKey, String studentId, Ref ref) {
+        Ref previous = index.computeIfAbsent(quizKey, k -> new HashMap<>()).put(studentId, ref);
+        if (previous != null) {
+            Segment old = segments.get(previous.segment());
+            if (old != null) {
+                old.liveBytes -= previous.length();
+            }
+        }
+    }
+
+    // Callers hold the write lock
+    private Ref append(byte[] record) throws IOException {
+        if (active.size >= segmentBytes) {
+            active = newSegment(active.id + 1);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + record.length)
+                .putInt(record.length)
+                .putInt((int) crc.getValue())
+                .put(record)
+                .flip();
+        long offset = active.size;
+        while (buffer.hasRemaining()) {
+            active.channel.write(buffer, offset + buffer.position());
+        }
+        active.size += buffer.limit();
+        active.liveBytes += buffer.limit();
+        return new Ref(0, 0, null, active.id, offset, buffer.limit());
+    }
+
+    private Segment newSegment(int id) throws IOException {
+        Path path = dir.resolve(String.format("segment-%06d.qps", id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, path, channel, channel.size());
+        segments.put(id, segment);
+        return segment;
+    }
+
+    // The record body at a known location (header included in length)
+    private static byte[] readRecord(Segment segment, long offset, int length) throws IOException {
+        byte[] record = readRecordAt(segment, offset);
+        if (record == null || HEADER_BYTES + record.length != length) {
+            throw new IOException("corrupt record at byte " + offset);
+        }
+        return record;
+    }
+
+    // The length of the record at offset, header included, as its prefix says; -1 if that
+    // does not fit in the segment
+    private static int recordLength(Segment segment, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (!readFully(segment.channel, header, offset)) {
+            return -1;
+        }
+        int length = header.flip().getInt();
+        return (length < 0 || offset + HEADER_BYTES + length > segment.size) ? -1 : HEADER_BYTES + length;
+    }
+
+    // null when the header or body is incomplete or fails its checksum
+    private static byte[] readRecordAt(Segment segment, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (!readFully(segment.channel, header, offset)) {
+            return null;
+        }
+        header.flip();
+        int length = header.getInt();
+        int expected = header.getInt();
+        if (length < 0 || offset + HEADER_BYTES + length > segment.size) {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        if (!readFully(segment.channel, body, offset + HEADER_BYTES)) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        return ((int) crc.getValue() == expected) ? body.array() : null;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String quizKey(String courseId, String quizId) {
+        return courseId + "/" + quizId;
+    }
+}
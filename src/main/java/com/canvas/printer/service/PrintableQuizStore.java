@@ -0,0 +1,93 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.PrintableQuiz;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Merged sheets produced ahead of time by PrintPrecomputeService, keyed by
+ * (course, quiz, student) and tagged with the submission fingerprint they were
+ * merged from.
+ *
+ * A sheet is only served while the precompute scan keeps confirming that fingerprint:
+ * once it hasn't been checked for canvas.precompute.max-age (the quiz stopped being
+ * watched, or Canvas is unreachable), print requests go back to Canvas.
+ */
+@Service
+public class PrintableQuizStore {
+
+    private final Duration maxAge;
+    private final int maxSheets;
+
+    // Access-ordered for LRU eviction. Guarded by itself.
+    private final Map<String, Entry> sheets;
+
+    public PrintableQuizStore(@Value("${canvas.precompute.max-age:PT10M}") Duration maxAge,
+            @Value("${canvas.precompute.max-sheets:20000}") int maxSheets) {
+        this.maxAge = maxAge;
+        this.maxSheets = maxSheets;
+        this.sheets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PrintableQuizStore.this.maxSheets;
+            }
+        };
+    }
+
+    private record Entry(PrintableQuiz quiz, String fingerprint, Instant checkedAt) {
+    }
+
+    // The stored sheet if it was confirmed recently, otherwise null
+    public PrintableQuiz get(String courseId, String quizId, String studentId) {
+        Entry entry;
+        synchronized (sheets) {
+            entry = sheets.get(key(courseId, quizId, studentId));
+        }
+        if (entry == null || entry.checkedAt().plus(maxAge).isBefore(Instant.now())) {
+            return null;
+        }
+        return entry.quiz();
+    }
+
+    public void put(String courseId, String quizId, String studentId, String fingerprint, PrintableQuiz quiz) {
+        synchronized (sheets) {
+            sheets.put(key(courseId, quizId, studentId), new Entry(quiz, fingerprint, Instant.now()));
+        }
+    }
+
+    /**
+     * Marks the stored sheet as still current if it was merged from this fingerprint.
+     * Returns false when the sheet is missing or out of date and needs merging again;
+     * an out-of-date sheet is dropped at once, so prints go to Canvas until it is.
+     */
+    public boolean confirm(String courseId, String quizId, String studentId, String fingerprint) {
+        String key = key(courseId, quizId, studentId);
+        synchronized (sheets) {
+            Entry entry = sheets.get(key);
+            if (entry == null) {
+                return false;
+            }
+            if (!entry.fingerprint().equals(fingerprint)) {
+                sheets.remove(key);
+                return false;
+            }
+            sheets.put(key, new Entry(entry.quiz(), fingerprint, Instant.now()));
+            return true;
+        }
+    }
+
+    public int size() {
+        synchronized (sheets) {
+            return sheets.size();
+        }
+    }
+
+    private static String key(String courseId, String quizId, String studentId) {
+        return courseId + "/" + quizId + "/" + studentId;
+    }
+}
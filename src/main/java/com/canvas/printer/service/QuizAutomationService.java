@@ -9,10 +9,23 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.net.URI;
-import java.net.http.HttpClient;
+import java.io.InputStream;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Service to automate Canvas Quiz submissions for the Test Student.
@@ -23,17 +36,38 @@ public class QuizAutomationService {
     private static final Logger logger = LoggerFactory.getLogger(QuizAutomationService.class);
 
     private final String canvasUrl;
-    private final String apiToken;
-    private final HttpClient client;
+    private final CanvasHttpClient client;
     private final ObjectMapper mapper;
+    private final CanvasApiService apiService;
+    private final SyntheticAnswers synthetic;
+    private final SyntheticAnswers.Plan defaultPlan;
+    private final int bulkConcurrency;
 
     public QuizAutomationService(@Value("${canvas.api.url}") String canvasUrl,
-            @Value("${canvas.api.token}") String apiToken,
-            ObjectMapper mapper) {
+            @Value("${canvas.automation.concurrency:8}") int bulkConcurrency,
+            @Value("${canvas.automation.answers:random}") String answers,
+            ObjectMapper mapper,
+            CanvasHttpClient client,
+            CanvasApiService apiService) {
         this.canvasUrl = canvasUrl.replaceAll("/$", "");
-        this.apiToken = apiToken;
-        this.client = HttpClient.newHttpClient();
+        this.bulkConcurrency = Math.max(1, bulkConcurrency);
+        this.defaultPlan = SyntheticAnswers.Plan.parse(answers);
+        this.client = client;
         this.mapper = mapper;
+        this.apiService = apiService;
+        this.synthetic = new SyntheticAnswers(mapper);
+    }
+
+    // One quiz of a bulk run
+    public record Target(String courseId, String quizId) {
+    }
+
+    // steps: milliseconds per step (testStudent, start, answer, complete), summed over the attempts
+    public record QuizResult(String courseId, String quizId, boolean ok, String message, long submissionId,
+            int attempts, long millis, Map<String, Long> steps) {
+    }
+
+    public record BulkReport(int total, int succeeded, int failed, long millis, List<QuizResult> results) {
     }
 
     /**
@@ -47,18 +81,7 @@ public class QuizAutomationService {
             String testStudentId = getTestStudentId(courseId);
             logger.info("Test Student ID: {}", testStudentId);
 
-            // 2. Start Submission
-            JsonNode submission = startQuizSubmission(courseId, quizId, testStudentId);
-            long submissionId = submission.path("id").asLong();
-            String validationToken = submission.path("validation_token").asText();
-            logger.info("Created Submission ID: {}", submissionId);
-
-            // 3. Answer Questions
-            answerQuestions(submissionId, validationToken, testStudentId);
-
-            // 4. Complete Quiz
-            completeQuiz(courseId, quizId, submissionId, validationToken, testStudentId);
-
+            runQuiz(courseId, quizId, testStudentId, defaultPlan, new LinkedHashMap<>());
             return "Quiz " + quizId + " completed successfully for Test Student (ID: " + testStudentId + ")";
 
         } catch (Exception e) {
@@ -73,10 +96,129 @@ public class QuizAutomationService {
         }
     }
 
+    /**
+     * Runs the test student through many quizzes at once, at most canvas.automation.concurrency
+     * at a time, one virtual thread each. Each course's test student is looked up once and
+     * shared by its quizzes. A failing quiz is reported in its result and doesn't stop the others.
+     *
+     * Each quiz is taken attempts times in a row, answered as the plan says
+     * (null: canvas.automation.answers).
+     */
+    public BulkReport runBulk(List<Target> targets, SyntheticAnswers.Plan plan, int attempts) {
+        SyntheticAnswers.Plan answers = (plan != null) ? plan : defaultPlan;
+        long start = System.nanoTime();
+        Map<String, CompletableFuture<String>> testStudents = new ConcurrentHashMap<>();
+        Semaphore permits = new Semaphore(bulkConcurrency);
+
+        List<Future<QuizResult>> running = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Target target : targets) {
+                running.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return runTarget(target, testStudents, answers, attempts);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        } // waits for every quiz
+
+        List<QuizResult> results = new ArrayList<>();
+        for (int i = 0; i < running.size(); i++) {
+            try {
+                results.add(running.get(i).get());
+            } catch (InterruptedException | ExecutionException e) {
+                Target target = targets.get(i);
+                results.add(new QuizResult(target.courseId(), target.quizId(), false, e.toString(), 0, 0, 0,
+                        Map.of()));
+            }
+        }
+        int succeeded = (int) results.stream().filter(QuizResult::ok).count();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Bulk automation: {} of {} quizzes completed in {} ms", succeeded, results.size(), millis);
+        return new BulkReport(results.size(), succeeded, results.size() - succeeded, millis, results);
+    }
+
+    // --- Helpers ---
+
+    private QuizResult runTarget(Target target, Map<String, CompletableFuture<String>> testStudents,
+            SyntheticAnswers.Plan plan, int attempts) {
+        long start = System.nanoTime();
+        Map<String, Long> steps = new LinkedHashMap<>();
+        int taken = 0;
+        long submissionId = 0;
+        try {
+            // 1. The course's test student, fetched by whichever of its quizzes gets here first
+            CompletableFuture<String> mine = new CompletableFuture<>();
+            CompletableFuture<String> shared = testStudents.putIfAbsent(target.courseId(), mine);
+            String testStudentId;
+            if (shared == null) {
+                long stepStart = System.nanoTime();
+                try {
+                    testStudentId = getTestStudentId(target.courseId());
+                    mine.complete(testStudentId);
+                } catch (Exception e) {
+                    mine.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    steps.put("testStudent", (System.nanoTime() - stepStart) / 1_000_000);
+                }
+            } else {
+                testStudentId = await(shared);
+            }
+
+            // 2. Start, answer and complete, once per attempt
+            while (taken < attempts) {
+                submissionId = runQuiz(target.courseId(), target.quizId(), testStudentId, plan, steps);
+                taken++;
+            }
+            return new QuizResult(target.courseId(), target.quizId(), true, "Completed as test student "
+                    + testStudentId, submissionId, taken, (System.nanoTime() - start) / 1_000_000, steps);
+        } catch (Exception e) {
+            logger.warn("Automation failed for course {} quiz {}: {}", target.courseId(), target.quizId(),
+                    e.getMessage());
+            return new QuizResult(target.courseId(), target.quizId(), false, e.getMessage(), submissionId, taken,
+                    (System.nanoTime() - start) / 1_000_000, steps);
+        }
+    }
+
+    // Steps 2-4 for a known test student; returns the quiz submission id
+    private long runQuiz(String courseId, String quizId, String testStudentId, SyntheticAnswers.Plan plan,
+            Map<String, Long> steps) throws Exception {
+        // 2. Start Submission
+        long stepStart = System.nanoTime();
+        JsonNode submission = startQuizSubmission(courseId, quizId, testStudentId);
+        long submissionId = submission.path("id").asLong();
+        int attempt = submission.path("attempt").asInt(1);
+        String validationToken = submission.path("validation_token").asText();
+        logger.info("Created Submission ID: {}", submissionId);
+        steps.merge("start", (System.nanoTime() - stepStart) / 1_000_000, Long::sum);
+
+        // 3. Answer Questions
+        stepStart = System.nanoTime();
+        answerQuestions(courseId, quizId, submissionId, attempt, validationToken, testStudentId, plan);
+        steps.merge("answer", (System.nanoTime() - stepStart) / 1_000_000, Long::sum);
+
+        // 4. Complete Quiz
+        stepStart = System.nanoTime();
+        completeQuiz(courseId, quizId, submissionId, attempt, validationToken, testStudentId);
+        steps.merge("complete", (System.nanoTime() - stepStart) / 1_000_000, Long::sum);
+        return submissionId;
+    }
+
+    private static String await(CompletableFuture<String> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof Exception cause) ? cause : e;
+        }
+    }
+
     private String getTestStudentId(String courseId) throws Exception {
-        // POST to this endpoint creates the test student if they don't exist
+        // Canvas creates the test student on first use
         String url = canvasUrl + "/api/v1/courses/" + courseId + "/student_view_student";
-        JsonNode response = sendRequest(url, "GET   ", null);
+        JsonNode response = sendRequest(url, "GET", null);
         return String.valueOf(response.path("id").asLong());
     }
 
@@ -84,33 +226,36 @@ public class QuizAutomationService {
         String url = canvasUrl + "/api/v1/courses/" + courseId + "/quizzes/" + quizId + "/submissions?as_user_id="
                 + asUserId;
         JsonNode response = sendRequest(url, "POST", null);
-        return response.get("submission");
+        // { "quiz_submissions": [ { ... } ] }
+        JsonNode submission = response.path("quiz_submissions").path(0);
+        if (submission.isMissingNode()) {
+            throw new IllegalStateException("Canvas returned no quiz submission for quiz " + quizId);
+        }
+        return submission;
     }
 
-    private void answerQuestions(long submissionId, String validationToken, String asUserId) throws Exception {
+    private void answerQuestions(String courseId, String quizId, long submissionId, int attempt,
+            String validationToken, String asUserId, SyntheticAnswers.Plan plan) throws Exception {
         String url = canvasUrl + "/api/v1/quiz_submissions/" + submissionId + "/questions?as_user_id=" + asUserId;
-        JsonNode questions = sendRequest(url, "GET", null);
+        // { "quiz_submission_questions": [ ... ] }
+        JsonNode questions = sendRequest(url, "GET", null).path("quiz_submission_questions");
 
         if (questions.isArray() && questions.size() > 0) {
-            ObjectNode payload = mapper.createObjectNode();
-            payload.put("validation_token", validationToken);
-            ArrayNode quizQuestions = payload.putArray("quiz_questions");
-
+            // The student's view hides which answers are right; the definitions have it
+            Map<Long, JsonNode> definitions = new HashMap<>();
+            for (JsonNode definition : apiService.getQuizQuestions(courseId, quizId)) {
+                definitions.put(definition.path("id").asLong(), definition);
+            }
+            ArrayNode answered = mapper.createArrayNode();
             for (JsonNode q : questions) {
-                long qId = q.path("id").asLong();
-                ObjectNode answerNode = mapper.createObjectNode();
-                answerNode.put("id", qId);
-
-                JsonNode answers = q.path("answers");
-                if (answers.isArray() && answers.size() > 0) {
-                    JsonNode firstOption = answers.get(0);
-                    answerNode.put("answer", firstOption.path("id").asLong());
-                } else {
-                    answerNode.put("answer", "Automated Test Answer");
-                }
-                quizQuestions.add(answerNode);
+                answered.add(definitions.getOrDefault(q.path("id").asLong(), q));
             }
 
+            ObjectNode payload = mapper.createObjectNode();
+            payload.put("attempt", attempt);
+            payload.put("validation_token", validationToken);
+            payload.set("quiz_questions", synthetic.quizQuestions(answered, plan, ThreadLocalRandom.current()));
+
             String postUrl = canvasUrl + "/api/v1/quiz_submissions/" + submissionId + "/questions?as_user_id="
                     + asUserId;
             sendRequest(postUrl, "POST", payload.toString());
@@ -118,24 +263,22 @@ public class QuizAutomationService {
         }
     }
 
-    private void completeQuiz(String courseId, String quizId, long submissionId, String validationToken,
-            String asUserId) throws Exception {
+    private void completeQuiz(String courseId, String quizId, long submissionId, int attempt,
+            String validationToken, String asUserId) throws Exception {
         String url = canvasUrl + "/api/v1/courses/" + courseId + "/quizzes/" + quizId + "/submissions/" + submissionId
                 + "/complete?as_user_id=" + asUserId;
 
         ObjectNode payload = mapper.createObjectNode();
-        payload.put("attempt", 1);
+        payload.put("attempt", attempt);
         payload.put("validation_token", validationToken);
 
         sendRequest(url, "POST", payload.toString());
         logger.info("Submission {} completed.", submissionId);
     }
 
-    // --- Helper to handle requests and clean up 404 HTML errors ---
+    // Handles requests and cleans up 404 HTML errors
     private JsonNode sendRequest(String url, String method, String jsonBody) throws Exception {
-        HttpRequest.Builder builder = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("Authorization", "Bearer " + apiToken)
+        HttpRequest.Builder builder = client.request(url)
                 .header("Content-Type", "application/json");
 
         if ("POST".equalsIgnoreCase(method)) {
@@ -148,10 +291,13 @@ public class QuizAutomationService {
             builder.GET();
         }
 
-        HttpResponse<String> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<InputStream> response = client.send(builder.build());
+        String body;
+        try (InputStream in = response.body()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
 
         if (response.statusCode() >= 400) {
-            String body = response.body();
             // Detect if Canvas returned a generic HTML error page (common with 404/500s on
             // wrong domains)
             if (body != null && (body.trim().startsWith("<!DOCTYPE html>") || body.trim().startsWith("<html"))) {
@@ -161,6 +307,6 @@ public class QuizAutomationService {
                     "Canvas API Error (" + method + " " + url + "): " + response.statusCode() + " " + body);
         }
 
-        return mapper.readTree(response.body());
+        return mapper.readTree(body);
     }
 }
\ No newline at end of file
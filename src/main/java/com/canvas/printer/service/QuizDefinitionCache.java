@@ -0,0 +1,95 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.QuizDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches question definitions and quiz details per (course, quiz), tagged with
+ * the quiz_version they belong to. Seeing a newer quiz_version in a student's
+ * quiz submission invalidates the entry and triggers a reload.
+ */
+@Service
+public class QuizDefinitionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuizDefinitionCache.class);
+
+    private final CanvasApiService apiService;
+    private final Duration callTimeout;
+    private final int maxQuizzes;
+
+    // Access-ordered for LRU eviction. Guarded by itself.
+    private final Map<String, QuizDefinition> definitions;
+
+    public QuizDefinitionCache(CanvasApiService apiService,
+            @Value("${canvas.api.call-timeout:PT20S}") Duration callTimeout,
+            @Value("${canvas.quiz-cache.max-quizzes:200}") int maxQuizzes) {
+        this.apiService = apiService;
+        this.callTimeout = callTimeout;
+        this.maxQuizzes = maxQuizzes;
+        this.definitions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QuizDefinition> eldest) {
+                return size() > QuizDefinitionCache.this.maxQuizzes;
+            }
+        };
+    }
+
+    // Cached definition, whatever its version, or null
+    public QuizDefinition peek(String courseId, String quizId) {
+        synchronized (definitions) {
+            return definitions.get(key(courseId, quizId));
+        }
+    }
+
+    public QuizDefinition put(QuizDefinition definition) {
+        synchronized (definitions) {
+            definitions.put(key(definition.courseId(), definition.quizId()), definition);
+        }
+        return definition;
+    }
+
+    /**
+     * Makes sure the definition is at least as new as the quiz_version a student saw.
+     * A freshly fetched, unversioned definition simply adopts that version (it can't be
+     * older than anything a student has already been served); an older one is reloaded.
+     */
+    public QuizDefinition ensureVersion(QuizDefinition current, int seenVersion) {
+        if (current.version() == QuizDefinition.UNVERSIONED) {
+            return put(current.withVersion(seenVersion));
+        }
+        if (seenVersion <= current.version()) {
+            return current;
+        }
+        logger.info("Quiz {} moved from version {} to {}; reloading definitions",
+                current.quizId(), current.version(), seenVersion);
+        return put(fetch(current.courseId(), current.quizId()).withVersion(seenVersion));
+    }
+
+    public QuizDefinition fetch(String courseId, String quizId) {
+        try (var scope = new CanvasFetchScope(callTimeout)) {
+            var questions = scope.fork("quiz questions", () -> apiService.getQuizQuestions(courseId, quizId));
+            var quiz = scope.fork("quiz details", () -> apiService.getQuiz(courseId, quizId));
+            scope.join();
+            // Compiled once here; every student merged against this version reuses it
+            QuizMergePlan plan = QuizMergePlan.compile(questions.get());
+            return new QuizDefinition(courseId, quizId, QuizDefinition.UNVERSIONED, questions.get(), quiz.get(), plan);
+        }
+    }
+
+    public void evict(String courseId, String quizId) {
+        synchronized (definitions) {
+            definitions.remove(key(courseId, quizId));
+        }
+    }
+
+    private static String key(String courseId, String quizId) {
+        return courseId + "/" + quizId;
+    }
+}
@@ -0,0 +1,374 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.PrintableOption;
+import com.canvas.printer.model.PrintableQuestion;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A quiz's questions compiled once into per-question handlers, so merging a student
+ * is a single indexed pass over their submission_data.
+ *
+ * Everything that only depends on the quiz is done at compile time: feedback
+ * sanitising, option text, match tables, the "answer_N" keys to look up, and the
+ * PrintableOption for each option in its selected and unselected state. Merging then
+ * only picks between prebuilt options. Plans are immutable and shared between threads.
+ */
+public final class QuizMergePlan {
+
+    private final QuestionPlan[] questions;
+    private final IdIndex questionIndex;
+
+    private QuizMergePlan(QuestionPlan[] questions, IdIndex questionIndex) {
+        this.questions = questions;
+        this.questionIndex = questionIndex;
+    }
+
+    public static QuizMergePlan compile(JsonNode questionsRoot) {
+        List<QuestionPlan> plans = new ArrayList<>();
+        if (questionsRoot != null && questionsRoot.isArray()) {
+            int index = 1; // Start counting for question numbering
+            for (JsonNode qNode : questionsRoot) {
+                plans.add(compileQuestion(qNode, index++));
+            }
+        }
+
+        long[] ids = new long[plans.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = plans.get(i).id();
+        }
+        return new QuizMergePlan(plans.toArray(QuestionPlan[]::new), IdIndex.of(ids));
+    }
+
+    public int size() {
+        return questions.length;
+    }
+
+    /**
+     * Merges one student's submission_data (an array of per-question answer objects).
+     * A null or empty array prints every question unanswered.
+     */
+    public List<PrintableQuestion> apply(JsonNode submissionData) {
+        // A. Index the student's answers by question position (first answer per question wins)
+        JsonNode[] answers = new JsonNode[questions.length];
+        if (submissionData != null && submissionData.isArray()) {
+            for (JsonNode answer : submissionData) {
+                int i = questionIndex.indexOf(answer.path("question_id").asLong());
+                if (i >= 0 && answers[i] == null) {
+                    answers[i] = answer;
+                }
+            }
+        }
+
+        // B. Run each question's handler against its answer
+        PrintableQuestion[] merged = new PrintableQuestion[questions.length];
+        for (int i = 0; i < questions.length; i++) {
+            merged[i] = questions[i].apply(answers[i]);
+        }
+        return Arrays.asList(merged);
+    }
+
+    // --- Compilation ---
+
+    private static QuestionPlan compileQuestion(JsonNode qNode, int questionNumber) {
+        long qId = qNode.path("id").asLong();
+        String questionText = qNode.path("question_text").asText("Question");
+        String qType = qNode.path("question_type").asText("unknown");
+
+        // Extract Feedback
+        String feedback = qNode.path("neutral_comments").asText(null);
+        if (feedback == null || feedback.trim().isEmpty()) {
+            feedback = qNode.path("correct_comments").asText(null);
+        }
+        if (feedback != null && feedback.trim().isEmpty()) {
+            feedback = null;
+        }
+
+        Header header = new Header(qId, questionNumber, questionText, feedback);
+        JsonNode answers = qNode.path("answers");
+        return switch (qType) {
+            case "matching_question" -> compileMatching(header, answers, qNode.path("matches"));
+            case "multiple_dropdowns_question" -> compileDropdowns(header, answers);
+            case "multiple_answers_question" -> compileMultipleAnswers(header, answers);
+            default -> compileSingleChoice(header, answers);
+        };
+    }
+
+    // --- 1. Matching Questions Logic ---
+    private static QuestionPlan compileMatching(Header header, JsonNode answers, JsonNode matches) {
+        long[] matchIds = new long[matches.size()];
+        String[] matchTexts = new String[matches.size()];
+        for (int i = 0; i < matchIds.length; i++) {
+            matchIds[i] = matches.get(i).path("match_id").asLong();
+            matchTexts[i] = matches.get(i).path("text").asText();
+        }
+        IdIndex matchIndex = IdIndex.of(matchIds);
+
+        int n = answers.size();
+        String[] keys = new String[n];
+        String[] leftTexts = new String[n];
+        String[] correctTexts = new String[n];
+        long[] correctMatchIds = new long[n];
+        PrintableOption[] unselected = new PrintableOption[n];
+        PrintableOption[] selectedRight = new PrintableOption[n];
+        for (int i = 0; i < n; i++) {
+            JsonNode ans = answers.get(i);
+            keys[i] = "answer_" + ans.path("id").asLong();
+            leftTexts[i] = ans.path("text").asText();
+            correctMatchIds[i] = ans.path("match_id").asLong();
+            int m = matchIndex.indexOf(correctMatchIds[i]);
+            correctTexts[i] = (m >= 0) ? matchTexts[m] : "[Unknown]";
+
+            String displayText = leftTexts[i] + " = " + correctTexts[i];
+            unselected[i] = new PrintableOption(displayText, true, false, false, null);
+            selectedRight[i] = new PrintableOption(displayText, true, true, false, null);
+        }
+
+        return new MatchingPlan(header, keys, leftTexts, correctTexts, correctMatchIds, unselected, selectedRight,
+                matchIndex, matchTexts);
+    }
+
+    // --- 2. Dropdown Questions Logic ---
+    private static QuestionPlan compileDropdowns(Header header, JsonNode answers) {
+        int n = answers.size();
+        String[] keys = new String[n];
+        long[] ids = new long[n];
+        PrintableOption[] unselected = new PrintableOption[n];
+        PrintableOption[] selected = new PrintableOption[n];
+        for (int i = 0; i < n; i++) {
+            JsonNode ans = answers.get(i);
+            ids[i] = ans.path("id").asLong();
+            String blankId = ans.path("blank_id").asText("");
+            // Canvas records the chosen answer id per blank as "answer_for_<blank_id>"
+            keys[i] = "answer_for_" + blankId;
+            String displayText = "[" + blankId + "] " + ans.path("text").asText();
+            boolean isCorrectKey = ans.path("weight").asInt(0) > 0;
+            unselected[i] = new PrintableOption(displayText, isCorrectKey, false, false, null);
+            selected[i] = new PrintableOption(displayText, isCorrectKey, true, !isCorrectKey, null);
+        }
+        return new DropdownPlan(header, keys, ids, unselected, selected);
+    }
+
+    // --- 3a. Multiple Answers Logic ---
+    private static QuestionPlan compileMultipleAnswers(Header header, JsonNode answers) {
+        int n = answers.size();
+        String[] keys = new String[n];
+        PrintableOption[] unselected = new PrintableOption[n];
+        PrintableOption[] selected = new PrintableOption[n];
+        for (int i = 0; i < n; i++) {
+            JsonNode ans = answers.get(i);
+            keys[i] = "answer_" + ans.path("id").asLong();
+            fillStandardOptions(ans, i, unselected, selected);
+        }
+        return new MultipleAnswersPlan(header, keys, unselected, selected);
+    }
+
+    // --- 3b. Standard MC/TF Logic ---
+    private static QuestionPlan compileSingleChoice(Header header, JsonNode answers) {
+        int n = answers.size();
+        long[] ids = new long[n];
+        PrintableOption[] unselected = new PrintableOption[n];
+        PrintableOption[] selected = new PrintableOption[n];
+        for (int i = 0; i < n; i++) {
+            JsonNode ans = answers.get(i);
+            ids[i] = ans.path("id").asLong();
+            fillStandardOptions(ans, i, unselected, selected);
+        }
+        return new SingleChoicePlan(header, ids, unselected, selected);
+    }
+
+    private static void fillStandardOptions(JsonNode ans, int i, PrintableOption[] unselected,
+            PrintableOption[] selected) {
+        String text = ans.path("text").asText();
+        // SAFETY: Default weight to 0 if missing
+        boolean isCorrectKey = ans.path("weight").asInt(0) > 0;
+
+        // Sanitize Feedback
+        String comments = ans.path("comments").asText(null);
+        if (comments != null && comments.trim().isEmpty()) {
+            comments = null;
+        }
+
+        unselected[i] = new PrintableOption(text, isCorrectKey, false, false, comments);
+        selected[i] = new PrintableOption(text, isCorrectKey, true, !isCorrectKey, comments);
+    }
+
+    // --- Handlers ---
+
+    private record Header(long id, int questionNumber, String questionText, String feedback) {
+
+        PrintableQuestion build(PrintableOption[] options) {
+            // C. Determine if Unanswered
+            boolean isUnanswered = true;
+            for (PrintableOption option : options) {
+                if (option.isSelected()) {
+                    isUnanswered = false;
+                    break;
+                }
+            }
+            return new PrintableQuestion(questionNumber, questionText, Arrays.asList(options), feedback, isUnanswered);
+        }
+    }
+
+    private sealed interface QuestionPlan {
+        long id();
+
+        PrintableQuestion apply(JsonNode answer); // answer is null if the student skipped it
+    }
+
+    private record SingleChoicePlan(Header header, long[] ids, PrintableOption[] unselected,
+            PrintableOption[] selected) implements QuestionPlan {
+
+        public long id() {
+            return header.id();
+        }
+
+        public PrintableQuestion apply(JsonNode answer) {
+            // Standard MC: answer_id matches option ID
+            JsonNode answerId = (answer != null) ? answer.get("answer_id") : null;
+            long chosen = (answerId != null) ? answerId.asLong() : Long.MIN_VALUE;
+
+            PrintableOption[] options = unselected.clone();
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == chosen) {
+                    options[i] = selected[i];
+                }
+            }
+            return header.build(options);
+        }
+    }
+
+    private record MultipleAnswersPlan(Header header, String[] keys, PrintableOption[] unselected,
+            PrintableOption[] selected) implements QuestionPlan {
+
+        public long id() {
+            return header.id();
+        }
+
+        public PrintableQuestion apply(JsonNode answer) {
+            PrintableOption[] options = unselected.clone();
+            if (answer != null) {
+                for (int i = 0; i < keys.length; i++) {
+                    // Value is "1" (Selected) vs "0" (Unselected)
+                    JsonNode value = answer.get(keys[i]);
+                    if (value != null && "1".equals(value.asText())) {
+                        options[i] = selected[i];
+                    }
+                }
+            }
+            return header.build(options);
+        }
+    }
+
+    private record MatchingPlan(Header header, String[] keys, String[] leftTexts, String[] correctTexts,
+            long[] correctMatchIds, PrintableOption[] unselected, PrintableOption[] selectedRight,
+            IdIndex matchIndex, String[] matchTexts) implements QuestionPlan {
+
+        public long id() {
+            return header.id();
+        }
+
+        public PrintableQuestion apply(JsonNode answer) {
+            PrintableOption[] options = unselected.clone();
+            if (answer != null) {
+                for (int i = 0; i < keys.length; i++) {
+                    JsonNode value = answer.get(keys[i]);
+                    long studentMatchId = (value != null) ? value.asLong() : 0;
+                    if (studentMatchId <= 0) {
+                        continue;
+                    }
+                    if (studentMatchId == correctMatchIds[i]) {
+                        options[i] = selectedRight[i];
+                    } else {
+                        // Wrong pairings name the student's choice, so their text is built per student
+                        int m = matchIndex.indexOf(studentMatchId);
+                        String choice = (m >= 0) ? matchTexts[m] : "[Unknown ID]";
+                        options[i] = new PrintableOption(
+                                leftTexts[i] + " = " + choice + " (Expected: " + correctTexts[i] + ")",
+                                true, false, true, null);
+                    }
+                }
+            }
+            return header.build(options);
+        }
+    }
+
+    private record DropdownPlan(Header header, String[] keys, long[] ids, PrintableOption[] unselected,
+            PrintableOption[] selected) implements QuestionPlan {
+
+        public long id() {
+            return header.id();
+        }
+
+        public PrintableQuestion apply(JsonNode answer) {
+            PrintableOption[] options = unselected.clone();
+            if (answer != null) {
+                for (int i = 0; i < keys.length; i++) {
+                    // Blank left empty comes back as "" (0), never a real answer id
+                    JsonNode value = answer.get(keys[i]);
+                    if (value != null && value.asLong(0) == ids[i]) {
+                        options[i] = selected[i];
+                    }
+                }
+            }
+            return header.build(options);
+        }
+    }
+
+    /**
+     * Open-addressing map from a Canvas id to its position, so lookups don't box.
+     * Duplicate ids keep their first position.
+     */
+    private static final class IdIndex {
+        private final long[] keys;
+        private final int[] positions; // position + 1; 0 marks an empty slot
+        private final int mask;
+
+        private IdIndex(int capacity) {
+            this.keys = new long[capacity];
+            this.positions = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        static IdIndex of(long[] ids) {
+            // Power of two, at most half full
+            int capacity = Integer.highestOneBit(Math.max(ids.length, 1) * 2 + 1) << 1;
+            IdIndex index = new IdIndex(capacity);
+            for (int i = 0; i < ids.length; i++) {
+                index.putIfAbsent(ids[i], i);
+            }
+            return index;
+        }
+
+        int indexOf(long id) {
+            for (int slot = slot(id);; slot = (slot + 1) & mask) {
+                if (positions[slot] == 0) {
+                    return -1;
+                }
+                if (keys[slot] == id) {
+                    return positions[slot] - 1;
+                }
+            }
+        }
+
+        private void putIfAbsent(long id, int position) {
+            int slot = slot(id);
+            while (positions[slot] != 0) {
+                if (keys[slot] == id) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = id;
+            positions[slot] = position + 1;
+        }
+
+        private int slot(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
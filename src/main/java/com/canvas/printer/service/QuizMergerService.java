@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
@@ -12,304 +13,522 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class QuizMergerService {
 
     private static final Logger logger = LoggerFactory.getLogger(QuizMergerService.class);
     private final CanvasApiService apiService;
+    private final CourseRosterCache rosterCache;
+    private final QuizDefinitionCache definitionCache;
+    private final PrintableQuizStore quizStore;
+    private final PrintSnapshotStore snapshots;
+    private final SubmissionIndex submissionIndex;
+    private final StudentAnalysisSource studentAnalysis;
+    private final PrintMetrics metrics;
     private final ObjectMapper mapper;
+    private final Duration callTimeout;
+    private final int lookahead;
+    private final int bulkSize;
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
             .withZone(ZoneId.systemDefault());
 
-    public QuizMergerService(CanvasApiService apiService, ObjectMapper mapper) {
+    public QuizMergerService(CanvasApiService apiService, CourseRosterCache rosterCache,
+            QuizDefinitionCache definitionCache, PrintableQuizStore quizStore, PrintSnapshotStore snapshots,
+            SubmissionIndex submissionIndex, StudentAnalysisSource studentAnalysis, PrintMetrics metrics,
+            ObjectMapper mapper,
+            @Value("${canvas.api.call-timeout:PT20S}") Duration callTimeout,
+            @Value("${canvas.print.lookahead:4}") int lookahead,
+            @Value("${canvas.print.bulk-size:100}") int bulkSize) {
         this.apiService = apiService;
+        this.rosterCache = rosterCache;
+        this.definitionCache = definitionCache;
+        this.quizStore = quizStore;
+        this.snapshots = snapshots;
+        this.submissionIndex = submissionIndex;
+        this.studentAnalysis = studentAnalysis;
+        this.metrics = metrics;
         this.mapper = mapper;
+        this.callTimeout = callTimeout;
+        this.lookahead = lookahead;
+        this.bulkSize = Math.max(1, bulkSize);
     }
 
     public PrintableQuiz getPrintableQuiz(String courseId, String quizId, String assignId, String studentId) {
-        try {
-            // 1. Fetch Data
-            String questionsJson = apiService.getQuizQuestionsJson(courseId, quizId);
+        // Already merged in the background after the quiz closed
+        PrintableQuiz precomputed = quizStore.get(courseId, quizId, studentId);
+        if (precomputed != null) {
+            return precomputed;
+        }
+        return mergePrintableQuiz(courseId, quizId, assignId, studentId);
+    }
+
+    // Merges from Canvas unless a stored snapshot is still current
+    private PrintableQuiz mergePrintableQuiz(String courseId, String quizId, String assignId, String studentId) {
+        // Definitions only change with quiz_version, so a cached copy skips two calls
+        QuizDefinition known = definitionCache.peek(courseId, quizId);
+
+        // 1. Printed before: the small quiz submission tells whether the snapshot is still current
+        QuizSubmissionInfo checked = quizSubmissionIfStored(courseId, quizId, studentId);
+        if (checked != null) {
+            PrintableQuiz snapshot = snapshots.get(courseId, quizId, studentId, checked.attempt(),
+                    checked.quizVersion(), checked.keptScore());
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+
+        // 2. Fetch Data (all calls in flight at once)
+        QuizDefinition definition;
+        CourseRoster roster;
+        StudentSubmission submission;
+        QuizSubmissionInfo quizSub;
+
+        long fetchStart = System.nanoTime();
+        try (var scope = new CanvasFetchScope(callTimeout)) {
+            var fetched = (known == null)
+                    ? scope.fork("quiz definition", () -> definitionCache.fetch(courseId, quizId))
+                    : null;
             // Keep the assignment submission JSON for answer data (submission_history)
-            String submissionJson = apiService.getSubmissionJson(courseId, assignId, studentId);
+            var submissionCall = scope.fork("submission", () -> apiService.getSubmission(courseId, assignId, studentId));
             // NEW: Fetch Quiz Submission specifically for time metadata
-            String quizSubmissionJson = apiService.getQuizSubmissionJson(courseId, quizId, studentId);
-
-            List<CanvasUser> users = apiService.getCourseUsers(courseId);
-            CanvasQuiz quizDetails = apiService.getQuiz(courseId, quizId);
-
-            // Find the student user object
-            CanvasUser studentUser = users.stream()
-                    .filter(u -> String.valueOf(u.id()).equals(studentId))
-                    .findFirst()
-                    .orElse(null);
-
-            String studentName = (studentUser != null) ? studentUser.name() : "Student ID: " + studentId;
-
-            // 2. Parse Trees
-            JsonNode questionsRoot = mapper.readTree(questionsJson);
-            JsonNode submissionNode = mapper.readTree(submissionJson);
-            JsonNode quizSubmissionRoot = mapper.readTree(quizSubmissionJson);
-
-            // 3. Extract Metadata from Quiz Submission (New API Call)
-            String startedAtStr = "N/A";
-            String finishedAtStr = "N/A";
-            String timeSpent = "N/A";
-
-            // The quiz submission API returns { "quiz_submissions": [ ... ] }
-            if (quizSubmissionRoot.has("quiz_submissions")) {
-                JsonNode quizSubs = quizSubmissionRoot.get("quiz_submissions");
-                if (quizSubs.isArray() && quizSubs.size() > 0) {
-                    JsonNode quizSub = quizSubs.get(0); // Get the first (and should be only) one for this user
-
-                    if (quizSub.has("started_at") && !quizSub.get("started_at").isNull()) {
-                        Instant start = Instant.parse(quizSub.get("started_at").asText());
-                        startedAtStr = formatter.format(start);
-                    }
-
-                    if (quizSub.has("finished_at") && !quizSub.get("finished_at").isNull()) {
-                        Instant finish = Instant.parse(quizSub.get("finished_at").asText());
-                        finishedAtStr = formatter.format(finish);
-                    }
-                    if (quizSub.has("time_spent") && !quizSub.get("time_spent").isNull()) {
-                        int timeSpentInSecond = quizSub.get("time_spent").asInt();
-                        Duration duration = Duration.ofSeconds(timeSpentInSecond);
+            var quizSubmissionCall = (checked == null)
+                    ? scope.fork("quiz submission", () -> apiService.getQuizSubmission(courseId, quizId, studentId))
+                    : null;
+            var rosterCall = scope.fork("course roster", () -> rosterCache.get(courseId));
+            scope.join();
+
+            definition = (known != null) ? known : fetched.get();
+            roster = rosterCall.get();
+            submission = submissionCall.get();
+            quizSub = (checked != null) ? checked : quizSubmissionCall.get();
+        }
+        metrics.mergePhase("fetch", fetchStart);
 
-                        long hours = duration.toHours();
-                        long minutes = duration.toMinutesPart();
-                        long seconds = duration.toSecondsPart();
+        long versionStart = System.nanoTime();
+        definition = definitionCache.ensureVersion(definition, quizSub.quizVersion());
+        metrics.mergePhase("version", versionStart);
+        return mergeAndStore(courseId, quizId, studentId, definition, roster, submission, quizSub);
+    }
 
-                        timeSpent = String.format("%d:%02d:%02d", hours, minutes, seconds);
+    /**
+     * Batch mode: fetches the question definitions, quiz details and roster once,
+     * then returns the students in print order (by name) to be merged as the batch
+     * is iterated. An empty studentIds list means "everyone who submitted".
+     * Quiz-wide failures are thrown here, before anything has been rendered.
+     */
+    public PrintBatch openPrintBatch(String courseId, String quizId, String assignId, List<String> studentIds) {
+        boolean everyone = studentIds == null || studentIds.isEmpty();
+        QuizDefinition known = definitionCache.peek(courseId, quizId);
+
+        // 1. Fetch Quiz-wide Data (once for the whole class)
+        QuizDefinition definition;
+        CourseRoster roster;
+        List<String> targets = studentIds;
+        Map<String, CanvasSubmission> listed = new LinkedHashMap<>(); // from the listing, when we have one
+
+        long fetchStart = System.nanoTime();
+        try (var scope = new CanvasFetchScope(callTimeout)) {
+            var fetched = (known == null)
+                    ? scope.fork("quiz definition", () -> definitionCache.fetch(courseId, quizId))
+                    : null;
+            var rosterCall = scope.fork("course roster", () -> rosterCache.get(courseId));
+            // 2. Resolve the students to print
+            var submissions = everyone
+                    ? scope.fork("submissions", () -> submissionIndex.getSubmissions(courseId, assignId))
+                    : null;
+            scope.join();
+
+            definition = (known != null) ? known : fetched.get();
+            roster = rosterCall.get();
+            if (everyone) {
+                for (CanvasSubmission s : submissions.get()) {
+                    if (!"unsubmitted".equals(s.workflow_state())) {
+                        listed.put(String.valueOf(s.user_id()), s);
                     }
                 }
+                targets = List.copyOf(listed.keySet());
             }
+        }
+        metrics.mergePhase("fetch", fetchStart);
+
+        // 3. Sort up front (the roster has the names), so sheets can be printed as they are merged
+        List<String> ordered = targets.stream()
+                .sorted(Comparator.comparing(id -> studentName(roster, id), String.CASE_INSENSITIVE_ORDER))
+                .toList();
+
+        // 4. Merge each student (one bad submission should not sink the whole batch)
+        // Students are merged concurrently, so a quiz_version bump is reloaded under a lock
+        CurrentDefinition current = new CurrentDefinition(definition);
+
+        // Students printed without any Canvas call: a precomputed sheet, or a snapshot whose attempt
+        // and score match the listing. quiz_version is fixed per attempt, so the snapshot was merged
+        // against this student's own version. Decided once, so the report and the bulk calls agree
+        Map<String, PrintSnapshotStore.Ref> stored = snapshots.quiz(courseId, quizId);
+        Set<String> local = ordered.stream().filter(studentId -> {
+            if (quizStore.get(courseId, quizId, studentId) != null) {
+                return true;
+            }
+            PrintSnapshotStore.Ref ref = stored.get(studentId);
+            CanvasSubmission listing = listed.get(studentId);
+            return ref != null && listing != null && ref.attempt() == listing.attempt()
+                    && PrintSnapshotStore.sameScore(ref.score(), String.valueOf(listing.score()));
+        }).collect(Collectors.toUnmodifiableSet());
+
+        // Everyone else is fetched a slice at a time, in print order, with bulk calls; for a large
+        // class the answers come from the quiz report, requested now so Canvas builds it meanwhile
+        StudentAnalysisSource.Request report = studentAnalysis.request(courseId, quizId, definition.questions(),
+                ordered.size() - local.size());
+        Map<String, Slice> slices = new HashMap<>();
+        for (int from = 0; from < ordered.size(); from += bulkSize) {
+            Slice slice = new Slice(ordered.subList(from, Math.min(from + bulkSize, ordered.size())));
+            slice.studentIds.forEach(studentId -> slices.put(studentId, slice));
+        }
 
-            // 4. Extract Answer Data & Attempt from Assignment Submission
-            JsonNode submissionData = null;
-            int attempt = 0;
-
-            if (submissionNode.has("submission_history")) {
-                JsonNode history = submissionNode.get("submission_history");
-                if (history != null && history.isArray() && history.size() > 0) {
-                    // Get latest attempt for answers
-                    JsonNode latestAttempt = history.get(history.size() - 1);
-
-                    if (latestAttempt.has("submission_data")) {
-                        submissionData = latestAttempt.get("submission_data");
+        // A student whose merge throws is left out by the batch, which reports why
+        return new PrintBatch(definition.quiz().title(), ordered, studentId -> {
+            Slice slice = slices.get(studentId);
+            try {
+                PrintableQuiz precomputed = quizStore.get(courseId, quizId, studentId);
+                if (precomputed != null) {
+                    return precomputed;
+                }
+                if (local.contains(studentId)) {
+                    PrintSnapshotStore.Ref ref = stored.get(studentId);
+                    PrintableQuiz snapshot = (ref != null)
+                            ? snapshots.get(courseId, quizId, studentId, ref.attempt(), ref.quizVersion(), ref.score())
+                            : null;
+                    if (snapshot != null) {
+                        return snapshot;
                     }
-
-                    attempt = latestAttempt.path("attempt").asInt(0);
+                    // Gone since the batch opened (expired, unreadable) and left out of the bulk calls
+                    return mergeFromBulk(courseId, quizId, assignId, studentId, BulkData.NONE, current, roster);
                 }
+                BulkData bulk = slice.data(() -> fetchBulk(courseId, quizId, assignId,
+                        slice.studentIds.stream().filter(id -> !local.contains(id)).toList(), report));
+                return mergeFromBulk(courseId, quizId, assignId, studentId, bulk, current, roster);
+            } finally {
+                slice.done();
             }
+        }, lookahead);
+    }
 
-            // Fallback for submission_data if not in history
-            if (submissionData == null && submissionNode.has("submission_data")) {
-                submissionData = submissionNode.get("submission_data");
+    /**
+     * Merges several students of one quiz the way a batch print does (bulk Canvas calls,
+     * stored snapshots reused), for PrintPrecomputeService. Students that fail are left out.
+     */
+    public Map<String, PrintableQuiz> mergePrintableQuizzes(String courseId, String quizId, String assignId,
+            List<String> studentIds) {
+        QuizDefinition known = definitionCache.peek(courseId, quizId);
+        QuizDefinition definition;
+        CourseRoster roster;
+        long fetchStart = System.nanoTime();
+        try (var scope = new CanvasFetchScope(callTimeout)) {
+            var fetched = (known == null)
+                    ? scope.fork("quiz definition", () -> definitionCache.fetch(courseId, quizId))
+                    : null;
+            var rosterCall = scope.fork("course roster", () -> rosterCache.get(courseId));
+            scope.join();
+            definition = (known != null) ? known : fetched.get();
+            roster = rosterCall.get();
+        }
+        metrics.mergePhase("fetch", fetchStart);
+
+        CurrentDefinition current = new CurrentDefinition(definition);
+        StudentAnalysisSource.Request report = studentAnalysis.request(courseId, quizId, definition.questions(),
+                studentIds.size());
+        Map<String, PrintableQuiz> merged = new LinkedHashMap<>();
+        for (int from = 0; from < studentIds.size(); from += bulkSize) {
+            List<String> slice = studentIds.subList(from, Math.min(from + bulkSize, studentIds.size()));
+            BulkData bulk = fetchBulk(courseId, quizId, assignId, slice, report);
+            for (String studentId : slice) {
+                try {
+                    merged.put(studentId, mergeFromBulk(courseId, quizId, assignId, studentId, bulk, current, roster));
+                } catch (Exception e) {
+                    logger.warn("Could not merge student {} (quiz {}): {}", studentId, quizId, e.getMessage());
+                }
             }
+        }
+        return merged;
+    }
 
-            // Fallback for submission data content
-            if (submissionData == null) {
-                logger.warn("No submission data found for student " + studentId + ". Printing blank quiz.");
-                submissionData = mapper.createArrayNode();
-            }
+    // Canvas data for one slice of students, fetched with one bulk call of each kind;
+    // fromReport are the students whose answers came from the quiz report instead
+    private record BulkData(Set<String> requested, Map<String, QuizSubmissionInfo> quizSubmissions,
+            Map<String, StudentSubmission> submissions, Set<String> fromReport,
+            StudentAnalysisSource.Request report) {
 
-            // 5. Metadata
-            String score = submissionNode.path("score").asText("0");
-            String quizTitle = quizDetails.title();
-            int timeLimit = quizDetails.time_limit();
-            List<String> questionTypes = quizDetails.question_types();
-            long pointsPossible = quizDetails.points_possible();
-
-            // 6. Merge Loop
-            List<PrintableQuestion> mergedQuestions = new ArrayList<>();
-            if (questionsRoot.isArray()) {
-                int index = 1; // Start counting for question numbering
-                for (JsonNode qNode : questionsRoot) {
-                    mergedQuestions.add(processQuestion(qNode, submissionData, index++));
-                }
-            }
+        static final BulkData NONE = new BulkData(Set.of(), Map.of(), Map.of(), Set.of(),
+                StudentAnalysisSource.Request.NONE);
+    }
 
-            return new PrintableQuiz(quizId, studentId, quizTitle, studentName, score,
-                    startedAtStr, finishedAtStr, timeSpent, attempt,
-                    pointsPossible, timeLimit, questionTypes, mergedQuestions);
+    // The definition a batch merges against; a version bump is reloaded under the lock
+    private static final class CurrentDefinition {
+        // A lock, not synchronized: the reload blocks on Canvas from a virtual thread
+        final ReentrantLock lock = new ReentrantLock();
+        private volatile QuizDefinition definition;
 
-        } catch (Exception e) {
-            logger.error("Failed to merge quiz", e);
-            return null;
+        CurrentDefinition(QuizDefinition definition) {
+            this.definition = definition;
         }
-    }
 
-    private PrintableQuestion processQuestion(JsonNode qNode, JsonNode submissionData, int questionNumber) {
-        long qId = qNode.path("id").asLong();
-        String questionText = qNode.path("question_text").asText("Question");
-        String qType = qNode.path("question_type").asText("unknown");
+        QuizDefinition get() {
+            return definition;
+        }
 
-        // Extract Feedback
-        String feedback = qNode.path("neutral_comments").asText(null);
-        if (feedback == null || feedback.trim().isEmpty()) {
-            feedback = qNode.path("correct_comments").asText(null);
+        void set(QuizDefinition definition) {
+            this.definition = definition;
         }
-        if (feedback != null && feedback.trim().isEmpty()) {
-            feedback = null;
+    }
+
+    // A slice of a batch print; its bulk data is fetched by the first student that needs it
+    // and dropped once every student in the slice has been merged
+    private static final class Slice {
+        final List<String> studentIds;
+        private final AtomicInteger remaining;
+        // A lock, not synchronized: the fetch blocks on Canvas from a virtual thread
+        private final ReentrantLock lock = new ReentrantLock();
+        private BulkData data;
+
+        Slice(List<String> studentIds) {
+            this.studentIds = studentIds;
+            this.remaining = new AtomicInteger(studentIds.size());
         }
 
-        // A. Find Student Answer Node
-        JsonNode studentAnswerNode = null;
-        if (submissionData != null && submissionData.isArray()) {
-            for (JsonNode answer : submissionData) {
-                if (answer.path("question_id").asLong() == qId) {
-                    studentAnswerNode = answer;
-                    break;
+        BulkData data(Supplier<BulkData> fetch) {
+            lock.lock();
+            try {
+                if (data == null) {
+                    data = fetch.get();
                 }
+                return data;
+            } finally {
+                lock.unlock();
             }
         }
 
-        // B. Process Options based on Type
-        List<PrintableOption> printableOptions = new ArrayList<>();
-
-        if ("matching_question".equals(qType)) {
-            printableOptions = processMatchingOptions(qNode, studentAnswerNode);
-        } else if ("multiple_dropdowns_question".equals(qType)) {
-            printableOptions = processDropdownOptions(qNode, studentAnswerNode);
-        } else {
-            printableOptions = processStandardOptions(qNode, studentAnswerNode, qType);
+        void done() {
+            if (remaining.decrementAndGet() == 0) {
+                lock.lock();
+                try {
+                    data = null;
+                } finally {
+                    lock.unlock();
+                }
+            }
         }
-
-        // C. Determine if Unanswered
-        boolean isUnanswered = printableOptions.stream().noneMatch(PrintableOption::isSelected);
-
-        return new PrintableQuestion(questionNumber, questionText, printableOptions, feedback, isUnanswered);
     }
 
-    // --- 1. Matching Questions Logic ---
-    private List<PrintableOption> processMatchingOptions(JsonNode qNode, JsonNode studentAnswerNode) {
-        List<PrintableOption> options = new ArrayList<>();
-
-        Map<Long, String> matchMap = new HashMap<>();
-        JsonNode matches = qNode.get("matches");
-        if (matches != null) {
-            for (JsonNode m : matches) {
-                matchMap.put(m.path("match_id").asLong(), m.path("text").asText());
-            }
+    /**
+     * Quiz submissions for the whole slice first: they confirm stored snapshots, so answers
+     * are only needed for students that need merging. Those come from the quiz report when it
+     * has the student's current attempt, and from a submission_history listing otherwise.
+     * If a bulk call fails the students are fetched one by one instead.
+     */
+    private BulkData fetchBulk(String courseId, String quizId, String assignId, List<String> studentIds,
+            StudentAnalysisSource.Request report) {
+        if (studentIds.isEmpty()) {
+            return BulkData.NONE;
         }
+        long fetchStart = System.nanoTime();
+        try {
+            Map<String, QuizSubmissionInfo> quizSubs;
+            try (var scope = new CanvasFetchScope(callTimeout)) {
+                var call = scope.fork("quiz submissions",
+                        () -> apiService.getQuizSubmissions(courseId, quizId, studentIds));
+                scope.join();
+                quizSubs = call.get();
+            }
 
-        JsonNode answers = qNode.get("answers");
-        if (answers != null) {
-            for (JsonNode ans : answers) {
-                long answerId = ans.path("id").asLong();
-                String leftText = ans.path("text").asText();
-                long correctMatchId = ans.path("match_id").asLong();
-                String correctRightText = matchMap.getOrDefault(correctMatchId, "[Unknown]");
-
-                boolean isSelected = false;
-                boolean isCorrect = false;
-                String studentChoiceText = " (No Answer)";
-
-                if (studentAnswerNode != null) {
-                    String key = "answer_" + answerId;
-                    if (studentAnswerNode.has(key)) {
-                        long studentMatchId = studentAnswerNode.get(key).asLong();
-                        if (studentMatchId > 0) {
-                            isSelected = true;
-                            studentChoiceText = matchMap.getOrDefault(studentMatchId, "[Unknown ID]");
-                            if (studentMatchId == correctMatchId) {
-                                isCorrect = true;
-                            }
-                        }
-                    }
+            List<String> unsnapshotted = studentIds.stream().filter(studentId -> {
+                QuizSubmissionInfo quizSub = quizSubs.getOrDefault(studentId, QuizSubmissionInfo.NONE);
+                PrintSnapshotStore.Ref ref = snapshots.latest(courseId, quizId, studentId);
+                return ref == null || !ref.isCurrent(quizSub.attempt(), quizSub.quizVersion(), quizSub.keptScore());
+            }).toList();
+            // Waits for the report, at most until its deadline
+            Map<String, StudentSubmission> submissions = new HashMap<>();
+            List<String> unreported = new ArrayList<>();
+            for (String studentId : unsnapshotted) {
+                QuizSubmissionInfo quizSub = quizSubs.get(studentId);
+                StudentSubmission reported = (quizSub != null) ? report.submission(studentId, quizSub.attempt()) : null;
+                if (reported == null) {
+                    unreported.add(studentId);
+                    continue;
+                }
+                // The assignment shows the kept score, which for "keep highest" isn't the report's latest attempt
+                String score = (quizSub.keptScore() != null) ? quizSub.keptScore() : reported.score();
+                submissions.put(studentId, new StudentSubmission(reported.userId(), score, reported.attempt(),
+                        reported.submissionData()));
+            }
+            Set<String> fromReport = Set.copyOf(submissions.keySet());
+            if (!unreported.isEmpty()) {
+                try (var scope = new CanvasFetchScope(callTimeout)) {
+                    var call = scope.fork("submissions", () -> apiService.getSubmissions(courseId, assignId, unreported));
+                    scope.join();
+                    submissions.putAll(call.get());
                 }
+            }
+            return new BulkData(Set.copyOf(studentIds), quizSubs, submissions, fromReport, report);
+        } catch (Exception e) {
+            logger.warn("Bulk fetch of {} students (quiz {}) failed, fetching them one by one: {}",
+                    studentIds.size(), quizId, e.getMessage());
+            return BulkData.NONE;
+        } finally {
+            metrics.mergePhase("fetch", fetchStart);
+        }
+    }
 
-                String displayText = leftText + " = " + correctRightText;
-                boolean isSelectedAndWrong = isSelected && !isCorrect;
+    // Merges one student from bulk data, fetching on its own whatever the bulk calls didn't cover
+    private PrintableQuiz mergeFromBulk(String courseId, String quizId, String assignId, String studentId,
+            BulkData bulk, CurrentDefinition current, CourseRoster roster) {
+        QuizSubmissionInfo quizSub = bulk.requested().contains(studentId)
+                ? bulk.quizSubmissions().getOrDefault(studentId, QuizSubmissionInfo.NONE)
+                : null;
+        if (quizSub != null) {
+            PrintableQuiz snapshot = snapshots.get(courseId, quizId, studentId, quizSub.attempt(),
+                    quizSub.quizVersion(), quizSub.keptScore());
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
 
-                if (isSelectedAndWrong) {
-                    displayText = leftText + " = " + studentChoiceText + " (Expected: " + correctRightText + ")";
-                }
+        StudentSubmission submission = bulk.submissions().get(studentId);
+        if (quizSub == null || submission == null) {
+            long fetchStart = System.nanoTime();
+            try (var scope = new CanvasFetchScope(callTimeout)) {
+                var submissionCall = (submission == null)
+                        ? scope.fork("submission", () -> apiService.getSubmission(courseId, assignId, studentId))
+                        : null;
+                var quizSubmissionCall = (quizSub == null)
+                        ? scope.fork("quiz submission", () -> apiService.getQuizSubmission(courseId, quizId, studentId))
+                        : null;
+                scope.join();
+                submission = (submission != null) ? submission : submissionCall.get();
+                quizSub = (quizSub != null) ? quizSub : quizSubmissionCall.get();
+            }
+            metrics.mergePhase("fetch", fetchStart);
+        }
 
-                options.add(new PrintableOption(displayText, true, isSelected && isCorrect, isSelectedAndWrong, null));
+        long versionStart = System.nanoTime();
+        QuizDefinition versioned;
+        current.lock.lock();
+        try {
+            versioned = definitionCache.ensureVersion(current.get(), quizSub.quizVersion());
+            current.set(versioned);
+        } finally {
+            current.lock.unlock();
+        }
+        metrics.mergePhase("version", versionStart);
+        if (bulk.fromReport().contains(studentId) && !bulk.report().mappedWith(versioned.questions())) {
+            // The quiz was edited after the report was read, so its answer ids may be stale
+            long fetchStart = System.nanoTime();
+            try (var scope = new CanvasFetchScope(callTimeout)) {
+                var submissionCall = scope.fork("submission", () -> apiService.getSubmission(courseId, assignId, studentId));
+                scope.join();
+                submission = submissionCall.get();
             }
+            metrics.mergePhase("fetch", fetchStart);
         }
-        return options;
+        return mergeAndStore(courseId, quizId, studentId, versioned, roster, submission, quizSub);
     }
 
-    // --- 2. Dropdown Questions Logic ---
-    private List<PrintableOption> processDropdownOptions(JsonNode qNode, JsonNode studentAnswerNode) {
-        List<PrintableOption> options = new ArrayList<>();
-        JsonNode answers = qNode.get("answers");
+    // The last two phases of every merge, timed separately
+    private PrintableQuiz mergeAndStore(String courseId, String quizId, String studentId, QuizDefinition definition,
+            CourseRoster roster, StudentSubmission submission, QuizSubmissionInfo quizSub) {
+        long mergeStart = System.nanoTime();
+        PrintableQuiz merged = mergeStudent(definition, studentId, roster, submission, quizSub);
+        metrics.mergePhase("merge", mergeStart);
+
+        long storeStart = System.nanoTime();
+        snapshots.put(courseId, quizId, studentId, quizSub.attempt(), quizSub.quizVersion(), merged);
+        metrics.mergePhase("store", storeStart);
+        return merged;
+    }
 
-        if (answers != null) {
-            for (JsonNode ans : answers) {
-                long id = ans.path("id").asLong();
-                String text = ans.path("text").asText();
-                String blankId = ans.path("blank_id").asText("");
-                int weight = ans.path("weight").asInt(0);
+    // Fetched on its own only when there is a stored snapshot it could confirm; null otherwise
+    private QuizSubmissionInfo quizSubmissionIfStored(String courseId, String quizId, String studentId) {
+        if (snapshots.latest(courseId, quizId, studentId) == null) {
+            return null;
+        }
+        try (var scope = new CanvasFetchScope(callTimeout)) {
+            var quizSubmissionCall = scope.fork("quiz submission",
+                    () -> apiService.getQuizSubmission(courseId, quizId, studentId));
+            scope.join();
+            return quizSubmissionCall.get();
+        }
+    }
 
-                String displayText = "[" + blankId + "] " + text;
+    // Package-private so the JMH benchmarks (src/jmh) can merge without going through Canvas
+    PrintableQuiz mergeStudent(QuizDefinition definition, String studentId, CourseRoster roster,
+            StudentSubmission submission, QuizSubmissionInfo quizSub) {
+        String quizId = definition.quizId();
+        CanvasQuiz quizDetails = definition.quiz();
 
-                boolean isCorrectKey = weight > 0;
-                boolean isSelected = false;
+        // 2. Find the student user object
+        String studentName = studentName(roster, studentId);
 
-                if (studentAnswerNode != null) {
-                    if (studentAnswerNode.toString().contains(String.valueOf(id))) {
-                        isSelected = true;
-                    }
-                }
+        // 3. Extract Metadata from Quiz Submission (New API Call)
+        String startedAtStr = "N/A";
+        String finishedAtStr = "N/A";
+        String timeSpent = "N/A";
 
-                boolean isSelectedAndWrong = isSelected && !isCorrectKey;
-                options.add(new PrintableOption(displayText, isCorrectKey, isSelected, isSelectedAndWrong, null));
-            }
+        if (quizSub.startedAt() != null) {
+            Instant start = Instant.parse(quizSub.startedAt());
+            startedAtStr = formatter.format(start);
         }
-        return options;
-    }
 
-    // --- 3. Standard MC/MA/TF Logic ---
-    private List<PrintableOption> processStandardOptions(JsonNode qNode, JsonNode studentAnswerNode, String qType) {
-        List<PrintableOption> options = new ArrayList<>();
-        JsonNode answers = qNode.get("answers");
-
-        if (answers != null) {
-            for (JsonNode ans : answers) {
-                long optId = ans.path("id").asLong();
-                String text = ans.path("text").asText();
-                // SAFETY: Default weight to 0 if missing
-                int weight = ans.path("weight").asInt(0);
-
-                // --- THE FIX: Sanitize Feedback ---
-                String comments = ans.path("comments").asText(null);
-                if (comments != null && comments.trim().isEmpty()) {
-                    comments = null;
-                }
+        if (quizSub.finishedAt() != null) {
+            Instant finish = Instant.parse(quizSub.finishedAt());
+            finishedAtStr = formatter.format(finish);
+        }
+        if (quizSub.timeSpent() != null) {
+            int timeSpentInSecond = quizSub.timeSpent();
+            Duration duration = Duration.ofSeconds(timeSpentInSecond);
 
-                boolean isCorrectKey = (weight > 0);
-                boolean isSelected = false;
-
-                if (studentAnswerNode != null) {
-                    if (qType.equals("multiple_answers_question")) {
-                        // FIX: Check value is "1" (Selected) vs "0" (Unselected)
-                        String key = "answer_" + optId;
-                        if (studentAnswerNode.has(key)) {
-                            String val = studentAnswerNode.get(key).asText();
-                            if ("1".equals(val)) {
-                                isSelected = true;
-                            }
-                        }
-                    } else {
-                        // Standard MC: answer_id matches option ID
-                        if (studentAnswerNode.has("answer_id")
-                                && studentAnswerNode.path("answer_id").asLong() == optId) {
-                            isSelected = true;
-                        }
-                    }
-                }
+            long hours = duration.toHours();
+            long minutes = duration.toMinutesPart();
+            long seconds = duration.toSecondsPart();
 
-                boolean isSelectedAndWrong = isSelected && !isCorrectKey;
-                options.add(new PrintableOption(text, isCorrectKey, isSelected, isSelectedAndWrong, comments));
-            }
+            timeSpent = String.format("%d:%02d:%02d", hours, minutes, seconds);
         }
-        return options;
+
+        // 4. Answer Data & Attempt (latest attempt, already picked out of submission_history)
+        JsonNode submissionData = submission.submissionData();
+        int attempt = submission.attempt();
+
+        // Fallback for submission data content
+        if (submissionData == null) {
+            logger.warn("No submission data found for student " + studentId + ". Printing blank quiz.");
+            submissionData = mapper.createArrayNode();
+        }
+
+        // 5. Metadata
+        String score = submission.score();
+        String quizTitle = quizDetails.title();
+        int timeLimit = quizDetails.time_limit();
+        List<String> questionTypes = quizDetails.question_types();
+        long pointsPossible = quizDetails.points_possible();
+
+        // 6. Merge (one indexed pass over the student's answers)
+        List<PrintableQuestion> mergedQuestions = definition.plan().apply(submissionData);
+
+        return new PrintableQuiz(quizId, studentId, quizTitle, studentName, score,
+                startedAtStr, finishedAtStr, timeSpent, attempt,
+                pointsPossible, timeLimit, questionTypes, mergedQuestions);
+    }
+
+    private static String studentName(CourseRoster roster, String studentId) {
+        CanvasUser studentUser = roster.find(studentId);
+        return (studentUser != null) ? studentUser.name() : "Student ID: " + studentId;
     }
-}
\ No newline at end of file
+}
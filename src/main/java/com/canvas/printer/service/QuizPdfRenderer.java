@@ -0,0 +1,135 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.PrintableQuiz;
+import com.openhtmltopdf.extend.impl.FSDefaultCacheStore;
+import com.openhtmltopdf.pdfboxout.PdfBoxRenderer;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.jsoup.Jsoup;
+import org.jsoup.helper.W3CDom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Renders merged quizzes to a single PDF on the server with openhtmltopdf.
+ *
+ * Students are laid out one at a time from the same quiz-print-view template the
+ * browser prints, and each is appended to one PDDocument whose page content is spooled
+ * to a temp file. Heap use is therefore bounded by one student's sheet, however big the
+ * class. Layout is CPU-heavy, so at most canvas.pdf.renderers students are laid out at
+ * once across all requests, and font metrics are shared between renders.
+ */
+@Service
+public class QuizPdfRenderer {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuizPdfRenderer.class);
+    private static final String TEMPLATE = "quiz-print-view";
+
+    private final ITemplateEngine templateEngine;
+    private final Semaphore renderers;
+    private final List<File> fonts = new ArrayList<>();
+    // Shared by every renderer; openhtmltopdf's default store is thread-safe
+    private final FSDefaultCacheStore fontMetrics = new FSDefaultCacheStore();
+
+    public QuizPdfRenderer(ITemplateEngine templateEngine,
+            @Value("${canvas.pdf.renderers:2}") int renderers,
+            @Value("${canvas.pdf.font-dir:}") String fontDir) {
+        this.templateEngine = templateEngine;
+        this.renderers = new Semaphore(renderers, true);
+        if (!fontDir.isBlank()) {
+            // The sheets are mostly Japanese; the PDF base fonts have no CJK glyphs
+            File[] files = new File(fontDir).listFiles((dir, name) -> name.matches("(?i).*\\.(ttf|otf)"));
+            if (files == null) {
+                throw new IllegalStateException("canvas.pdf.font-dir is not a directory: " + fontDir);
+            }
+            fonts.addAll(List.of(files));
+            logger.info("PDF fonts: {}", fonts.stream().map(File::getName).toList());
+        }
+    }
+
+    /**
+     * Writes every quiz into one PDF, one sheet per student. The iterable is consumed
+     * lazily, so a caller may still be merging later students while earlier ones render.
+     */
+    public void render(Iterable<PrintableQuiz> quizzes, String title, OutputStream out) throws IOException {
+        try (PDDocument document = new PDDocument(IOUtils.createTempFileOnlyStreamCache())) {
+            int sheets = 0;
+            for (PrintableQuiz quiz : quizzes) {
+                append(document, title, List.of(quiz));
+                sheets++;
+            }
+            if (sheets == 0) {
+                append(document, title, List.of()); // a PDF needs at least one page
+            }
+
+            document.getDocumentInformation().setTitle(title);
+            document.save(out);
+            logger.info("PDF '{}': {} sheets, {} pages", title, sheets, document.getNumberOfPages());
+        }
+    }
+
+    // --- Helpers ---
+
+    private void append(PDDocument document, String title, List<PrintableQuiz> quizzes) throws IOException {
+        String html = templateEngine.process(TEMPLATE,
+                new Context(Locale.getDefault(), Map.of("documentTitle", title, "quizzes", quizzes)));
+        org.w3c.dom.Document dom = toXhtml(html);
+
+        try {
+            renderers.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a PDF renderer", e);
+        }
+        try {
+            PdfRendererBuilder builder = new PdfRendererBuilder()
+                    .useFastMode()
+                    .usePDDocument(document)
+                    .useCacheStore(PdfRendererBuilder.CacheStore.PDF_FONT_METRICS, fontMetrics)
+                    .withW3cDocument(dom, "");
+            for (File font : fonts) {
+                builder.useFont(font, familyName(font));
+            }
+            try (PdfBoxRenderer renderer = builder.buildPdfRenderer()) {
+                renderer.createPDFWithoutClosing();
+            }
+        } finally {
+            renderers.release();
+        }
+    }
+
+    // openhtmltopdf wants well-formed XHTML; jsoup repairs the template's HTML5 output
+    private org.w3c.dom.Document toXhtml(String html) {
+        org.jsoup.nodes.Document doc = Jsoup.parse(html);
+        // Web fonts and scripts are for the browser; don't fetch them from inside a render
+        doc.select("link[rel=stylesheet], script").remove();
+        if (!fonts.isEmpty()) {
+            // The template picks fonts through CSS variables, which openhtmltopdf doesn't support
+            StringBuilder families = new StringBuilder();
+            for (File font : fonts) {
+                families.append('"').append(familyName(font)).append("\", ");
+            }
+            doc.head().appendElement("style").text("* { font-family: " + families + "serif !important; }");
+        }
+        return new W3CDom().fromJsoup(doc);
+    }
+
+    private static String familyName(File font) {
+        String name = font.getName();
+        return name.substring(0, name.lastIndexOf('.'));
+    }
+}
@@ -0,0 +1,327 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.StudentSubmission;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a quiz's student_analysis report (CSV) one row at a time, turning each student's
+ * answers back into submission_data shaped like submission_history's, so the merge can't
+ * tell the two apart.
+ *
+ * The report has answers as text: one column per question headed "<question id>: <text>",
+ * multiple answers joined with "," (commas inside an answer escaped as "\,"), matches as
+ * "left=>right" and dropdowns as one choice per blank. Text is looked up in the quiz's
+ * question definitions. A student whose text can't be matched to exactly one answer is
+ * left out, and so fetched from submission_history instead.
+ */
+final class StudentAnalysisReader {
+
+    private static final Pattern QUESTION_HEADER = Pattern.compile("^(\\d+): ");
+    private static final Pattern TAG = Pattern.compile("<[^>]*>");
+    private static final Pattern SPACE = Pattern.compile("\\s+");
+
+    // Free text, or answers the merge doesn't select anything for: never a reason to fall back
+    private static final Set<String> UNMATCHED_IS_BLANK = Set.of("short_answer_question", "essay_question",
+            "file_upload_question", "text_only_question", "fill_in_multiple_blanks_question");
+
+    private final ObjectMapper mapper;
+
+    StudentAnalysisReader(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /** Students that could be mapped, keyed by user id. */
+    Map<String, StudentSubmission> read(InputStream in, JsonNode questions) throws IOException {
+        Map<Long, AnswerMapper> mappers = new HashMap<>();
+        int answerable = 0;
+        for (JsonNode question : questions) {
+            mappers.put(question.path("id").asLong(), answerMapper(question));
+            answerable += "text_only_question".equals(question.path("question_type").asText()) ? 0 : 1;
+        }
+
+        CsvRecords csv = new CsvRecords(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<String> header = csv.next();
+        if (header == null) {
+            return Map.of();
+        }
+
+        // 1. Locate the columns: student id, attempt, score and one per question
+        int idColumn = header.indexOf("id");
+        int attemptColumn = header.indexOf("attempt");
+        int scoreColumn = header.lastIndexOf("score");
+        Map<Integer, Long> questionColumns = new LinkedHashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            Matcher m = QUESTION_HEADER.matcher(header.get(i));
+            if (m.find() && mappers.containsKey(Long.parseLong(m.group(1)))) {
+                questionColumns.put(i, Long.parseLong(m.group(1)));
+            }
+        }
+        if (idColumn < 0 || attemptColumn < 0 || questionColumns.size() < answerable) {
+            throw new IOException("Unexpected student_analysis header: " + header);
+        }
+
+        // 2. One student per row
+        Map<String, StudentSubmission> byStudent = new HashMap<>();
+        for (List<String> row = csv.next(); row != null; row = csv.next()) {
+            if (row.size() != header.size()) {
+                continue; // a footer or a damaged row
+            }
+            try {
+                ArrayNode data = mapper.createArrayNode();
+                for (Map.Entry<Integer, Long> column : questionColumns.entrySet()) {
+                    String cell = row.get(column.getKey());
+                    if (cell.isEmpty()) {
+                        continue; // skipped
+                    }
+                    ObjectNode answer = mappers.get(column.getValue()).map(cell);
+                    if (answer != null) {
+                        data.add(answer.put("question_id", column.getValue()));
+                    }
+                }
+                String userId = row.get(idColumn);
+                String score = (scoreColumn >= 0 && !row.get(scoreColumn).isEmpty()) ? row.get(scoreColumn) : "0";
+                byStudent.put(userId, new StudentSubmission(Long.parseLong(userId), score,
+                        Integer.parseInt(row.get(attemptColumn)), data));
+            } catch (UnmappableAnswer | NumberFormatException e) {
+                // Left for submission_history
+            }
+        }
+        return byStudent;
+    }
+
+    // --- Helpers ---
+
+    @FunctionalInterface
+    private interface AnswerMapper {
+        ObjectNode map(String cell) throws UnmappableAnswer; // null: nothing selected
+    }
+
+    private static final class UnmappableAnswer extends Exception {
+        UnmappableAnswer() {
+            super(null, null, false, false);
+        }
+    }
+
+    private AnswerMapper answerMapper(JsonNode question) {
+        String type = question.path("question_type").asText("");
+        JsonNode answers = question.path("answers");
+        return switch (type) {
+            case "multiple_answers_question" -> multipleAnswers(answers);
+            case "matching_question" -> matching(answers, question.path("matches"));
+            case "multiple_dropdowns_question" -> dropdowns(answers);
+            default -> singleChoice(answers, UNMATCHED_IS_BLANK.contains(type),
+                    "short_answer_question".equals(type));
+        };
+    }
+
+    private AnswerMapper singleChoice(JsonNode answers, boolean unmatchedIsBlank, boolean ignoreCase) {
+        Map<String, Long> ids = textIndex(answers, ignoreCase);
+        return cell -> {
+            Long id = ids.get(normalize(cell, ignoreCase));
+            if (id == null || id < 0) {
+                if (unmatchedIsBlank) {
+                    return null;
+                }
+                throw new UnmappableAnswer();
+            }
+            return mapper.createObjectNode().put("answer_id", id);
+        };
+    }
+
+    // "A,B\,C": every listed text selected, every other answer explicitly not
+    private AnswerMapper multipleAnswers(JsonNode answers) {
+        Map<String, Long> ids = textIndex(answers, false);
+        return cell -> {
+            ObjectNode answer = mapper.createObjectNode();
+            for (JsonNode option : answers) {
+                answer.put("answer_" + option.path("id").asLong(), "0");
+            }
+            for (String text : split(cell, ",")) {
+                Long id = ids.get(normalize(text, false));
+                if (id == null || id < 0) {
+                    throw new UnmappableAnswer();
+                }
+                answer.put("answer_" + id, "1");
+            }
+            return answer;
+        };
+    }
+
+    // "left=>right" per answer, in answer order; an empty right side is an unanswered pair
+    private AnswerMapper matching(JsonNode answers, JsonNode matches) {
+        Map<String, Long> matchIds = new HashMap<>();
+        for (JsonNode match : matches) {
+            matchIds.merge(normalize(match.path("text").asText(), false), match.path("match_id").asLong(),
+                    (a, b) -> -1L);
+        }
+        return cell -> {
+            List<String> pairs = split(cell, ",");
+            if (pairs.size() != answers.size()) {
+                throw new UnmappableAnswer();
+            }
+            ObjectNode answer = mapper.createObjectNode();
+            for (int i = 0; i < pairs.size(); i++) {
+                List<String> sides = split(pairs.get(i), "=>");
+                JsonNode option = answers.get(i);
+                if (sides.size() != 2
+                        || !normalize(sides.get(0), false).equals(normalize(option.path("text").asText(), false))) {
+                    throw new UnmappableAnswer();
+                }
+                String right = normalize(sides.get(1), false);
+                if (right.isEmpty()) {
+                    continue;
+                }
+                Long matchId = matchIds.get(right);
+                if (matchId == null || matchId < 0) {
+                    throw new UnmappableAnswer();
+                }
+                answer.put("answer_" + option.path("id").asLong(), String.valueOf(matchId));
+            }
+            return answer;
+        };
+    }
+
+    // One choice per blank, blanks in the order they first appear among the answers
+    private AnswerMapper dropdowns(JsonNode answers) {
+        Map<String, Map<String, Long>> blanks = new LinkedHashMap<>();
+        for (JsonNode option : answers) {
+            blanks.computeIfAbsent(option.path("blank_id").asText(""), k -> new HashMap<>())
+                    .merge(normalize(option.path("text").asText(), false), option.path("id").asLong(),
+                            (a, b) -> -1L);
+        }
+        List<String> blankIds = new ArrayList<>(blanks.keySet());
+        return cell -> {
+            List<String> choices = split(cell, ",");
+            if (choices.size() != blankIds.size()) {
+                throw new UnmappableAnswer();
+            }
+            ObjectNode answer = mapper.createObjectNode();
+            for (int i = 0; i < choices.size(); i++) {
+                String text = normalize(choices.get(i), false);
+                if (text.isEmpty()) {
+                    continue;
+                }
+                Long id = blanks.get(blankIds.get(i)).get(text);
+                if (id == null || id < 0) {
+                    throw new UnmappableAnswer();
+                }
+                answer.put("answer_for_" + blankIds.get(i), id);
+            }
+            return answer;
+        };
+    }
+
+    // Answer text -> id; texts shared by two answers map to -1 (ambiguous)
+    private static Map<String, Long> textIndex(JsonNode answers, boolean ignoreCase) {
+        Map<String, Long> ids = new HashMap<>();
+        for (JsonNode option : answers) {
+            String text = option.path("text").asText("");
+            if (text.isEmpty()) {
+                text = option.path("html").asText("");
+            }
+            ids.merge(normalize(text, ignoreCase), option.path("id").asLong(), (a, b) -> -1L);
+        }
+        return ids;
+    }
+
+    // The report strips HTML and may differ from the definition in whitespace
+    private static String normalize(String text, boolean ignoreCase) {
+        String plain = SPACE.matcher(TAG.matcher(text).replaceAll("")).replaceAll(" ").trim();
+        return ignoreCase ? plain.toLowerCase(Locale.ROOT) : plain;
+    }
+
+    // Splits on a separator not escaped with a backslash, unescaping "\<separator>"
+    private static List<String> split(String cell, String separator) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder part = new StringBuilder();
+        for (int i = 0; i < cell.length(); i++) {
+            if (cell.charAt(i) == '\\' && cell.startsWith(separator, i + 1)) {
+                part.append(separator);
+                i += separator.length();
+            } else if (cell.startsWith(separator, i)) {
+                parts.add(part.toString());
+                part.setLength(0);
+                i += separator.length() - 1;
+            } else {
+                part.append(cell.charAt(i));
+            }
+        }
+        parts.add(part.toString());
+        return parts;
+    }
+
+    /** RFC 4180 records read off a stream one at a time; quoted fields may hold commas, quotes and newlines. */
+    static final class CsvRecords {
+        private final Reader in;
+
+        CsvRecords(Reader in) {
+            this.in = (in instanceof BufferedReader) ? in : new BufferedReader(in, 64 * 1024);
+        }
+
+        /** The next record's fields, or null at the end of the stream. */
+        List<String> next() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+            int c;
+            while ((c = in.read()) != -1) {
+                any = true;
+                if (quoted) {
+                    if (c != '"') {
+                        field.append((char) c);
+                        continue;
+                    }
+                    in.mark(1);
+                    if (in.read() == '"') {
+                        field.append('"'); // "" inside quotes
+                    } else {
+                        in.reset();
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c == '\r') {
+                    in.mark(1);
+                    if (in.read() != '\n') {
+                        in.reset();
+                    }
+                    break;
+                } else if (c == '\uFEFF' && fields.isEmpty() && field.isEmpty()) {
+                    // byte order mark
+                } else {
+                    field.append((char) c);
+                }
+            }
+            if (!any) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.StudentSubmission;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Every student's answers to a quiz from one download: Canvas's student_analysis quiz report.
+ *
+ * A whole-class print otherwise lists submission_history, the largest payload Canvas has,
+ * a page of students at a time. The report is requested when the batch opens, polled until
+ * Canvas has generated it (canvas.quiz-report.timeout at most) and parsed as it streams in.
+ * Students the report can't answer for (a newer attempt, text that doesn't map back to one
+ * answer, a report that failed or came too late) are fetched the usual way.
+ */
+@Service
+public class StudentAnalysisSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentAnalysisSource.class);
+
+    private final CanvasApiService apiService;
+    private final StudentAnalysisReader reader;
+    private final boolean enabled;
+    private final int minStudents;
+    private final Duration timeout;
+    private final Duration pollInterval;
+    // Polling mostly sleeps; one virtual thread per report
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public StudentAnalysisSource(CanvasApiService apiService, ObjectMapper mapper,
+            @Value("${canvas.quiz-report.enabled:true}") boolean enabled,
+            @Value("${canvas.quiz-report.min-students:100}") int minStudents,
+            @Value("${canvas.quiz-report.timeout:PT30S}") Duration timeout,
+            @Value("${canvas.quiz-report.poll-interval:PT2S}") Duration pollInterval) {
+        this.apiService = apiService;
+        this.reader = new StudentAnalysisReader(mapper);
+        this.enabled = enabled;
+        this.minStudents = minStudents;
+        this.timeout = timeout;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Starts generating the report if the batch is big enough to be worth it;
+     * otherwise (or when disabled) returns a request that never has data.
+     */
+    public Request request(String courseId, String quizId, JsonNode questions, int students) {
+        if (!enabled || students < minStudents) {
+            return Request.NONE;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        CompletableFuture<Map<String, StudentSubmission>> report = CompletableFuture.supplyAsync(
+                () -> fetch(courseId, quizId, questions, deadline), executor);
+        return new Request(quizId, questions, report, deadline);
+    }
+
+    /**
+     * A report on its way. Waits at most until the deadline set when it was requested,
+     * so callers that come later don't wait any longer.
+     */
+    public static final class Request {
+
+        static final Request NONE = new Request(null, null, CompletableFuture.completedFuture(Map.of()), 0);
+
+        private final String quizId;
+        private final JsonNode questions;
+        private final CompletableFuture<Map<String, StudentSubmission>> report;
+        private final long deadline;
+        private final AtomicBoolean reported = new AtomicBoolean();
+
+        private Request(String quizId, JsonNode questions, CompletableFuture<Map<String, StudentSubmission>> report,
+                long deadline) {
+            this.quizId = quizId;
+            this.questions = questions;
+            this.report = report;
+            this.deadline = deadline;
+        }
+
+        /** The student's answers if the report has them for this attempt; null otherwise. */
+        public StudentSubmission submission(String studentId, int attempt) {
+            StudentSubmission submission = await().get(studentId);
+            return (submission != null && submission.attempt() == attempt) ? submission : null;
+        }
+
+        // Answers are mapped to answer ids through these; a reloaded definition may not share them
+        public boolean mappedWith(JsonNode questions) {
+            return this.questions == questions;
+        }
+
+        private Map<String, StudentSubmission> await() {
+            try {
+                return report.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (reported.compareAndSet(false, true)) {
+                    logger.info("student_analysis report for quiz {} not ready in time, fetching submissions instead",
+                            quizId);
+                }
+            } catch (ExecutionException e) {
+                if (reported.compareAndSet(false, true)) {
+                    logger.warn("student_analysis report for quiz {} failed, fetching submissions instead: {}",
+                            quizId, e.getCause().getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Map.of();
+        }
+    }
+
+    // --- Helpers ---
+
+    private Map<String, StudentSubmission> fetch(String courseId, String quizId, JsonNode questions, long deadline) {
+        // 1. Create (Canvas hands back an existing report if it is still current)
+        JsonNode report = apiService.createQuizReport(courseId, quizId, "student_analysis");
+
+        // 2. Poll until it has a file
+        while (report.path("file").path("url").asText("").isEmpty()) {
+            String state = report.path("progress").path("workflow_state").asText("");
+            if ("failed".equals(state)) {
+                throw new IllegalStateException("Canvas could not generate the report");
+            }
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                throw new IllegalStateException("Still " + state + " at the deadline");
+            }
+            try {
+                Thread.sleep(Math.min(pollInterval.toMillis(), TimeUnit.NANOSECONDS.toMillis(left) + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the report", e);
+            }
+            report = apiService.getQuizReport(courseId, quizId, report.path("id").asText());
+        }
+
+        // 3. Download and map the answers as the CSV streams in
+        Map<String, StudentSubmission> byStudent = apiService.downloadFile(report.path("file").path("url").asText(),
+                in -> reader.read(in, questions));
+        logger.info("student_analysis report for quiz {}: answers for {} students", quizId, byStudent.size());
+        return byStudent;
+    }
+}
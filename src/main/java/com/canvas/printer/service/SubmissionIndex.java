@@ -0,0 +1,159 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.CanvasSubmission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A locally held copy of each assignment's submission list, kept current with
+ * Canvas's submitted_since / graded_since filters instead of downloading the
+ * whole list on every dashboard load.
+ *
+ * The first load of an assignment is a full listing. After that only submissions
+ * handed in or graded since the newest ones already seen are requested (less
+ * canvas.submissions.sync-overlap, so clock skew and same-second writes are not
+ * missed) and merged in by user. The filters can't report deletions or excusals,
+ * so a full listing is still done every canvas.submissions.full-sync-interval.
+ */
+@Service
+public class SubmissionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionIndex.class);
+
+    private final CanvasApiService apiService;
+    private final Duration overlap;
+    private final Duration minSyncInterval;
+    private final Duration fullSyncInterval;
+    private final int maxAssignments;
+
+    // Access-ordered for LRU eviction. Guarded by itself; each Assignment is guarded by its own lock.
+    private final Map<String, Assignment> assignments;
+
+    public SubmissionIndex(CanvasApiService apiService,
+            @Value("${canvas.submissions.sync-overlap:PT2M}") Duration overlap,
+            @Value("${canvas.submissions.min-sync-interval:PT5S}") Duration minSyncInterval,
+            @Value("${canvas.submissions.full-sync-interval:PT1H}") Duration fullSyncInterval,
+            @Value("${canvas.submissions.max-assignments:200}") int maxAssignments) {
+        this.apiService = apiService;
+        this.overlap = overlap;
+        this.minSyncInterval = minSyncInterval;
+        this.fullSyncInterval = fullSyncInterval;
+        this.maxAssignments = maxAssignments;
+        this.assignments = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Assignment> eldest) {
+                return size() > SubmissionIndex.this.maxAssignments;
+            }
+        };
+    }
+
+    // One assignment's submissions by user, in the order Canvas first listed them
+    private static final class Assignment {
+        // Not a synchronized block: a sync waits on Canvas, and a virtual thread blocked
+        // inside a monitor pins its carrier thread, which can stall every other virtual thread
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<Long, CanvasSubmission> byUser = new LinkedHashMap<>();
+        Instant submittedMark = Instant.EPOCH; // newest submitted_at seen
+        Instant gradedMark = Instant.EPOCH; // newest graded_at seen
+        Instant fullSyncAt;
+        Instant syncedAt;
+    }
+
+    /**
+     * The assignment's submissions, synced with Canvas first. Concurrent callers
+     * share one sync, and loads within canvas.submissions.min-sync-interval of the
+     * last sync are answered from the index alone.
+     */
+    public List<CanvasSubmission> getSubmissions(String courseId, String assignmentId) {
+        Assignment assignment;
+        synchronized (assignments) {
+            assignment = assignments.computeIfAbsent(courseId + "/" + assignmentId, k -> new Assignment());
+        }
+        assignment.lock.lock();
+        try {
+            Instant now = Instant.now();
+            if (assignment.fullSyncAt == null || assignment.fullSyncAt.plus(fullSyncInterval).isBefore(now)) {
+                fullSync(courseId, assignmentId, assignment, now);
+            } else if (assignment.syncedAt.plus(minSyncInterval).isBefore(now)) {
+                incrementalSync(courseId, assignmentId, assignment, now);
+            }
+            return new ArrayList<>(assignment.byUser.values());
+        } finally {
+            assignment.lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets the assignment, so the next load lists it in full.
+     * Used when something the filters can't see changed (e.g. a submission was deleted).
+     */
+    public void invalidate(String courseId, String assignmentId) {
+        synchronized (assignments) {
+            assignments.remove(courseId + "/" + assignmentId);
+        }
+    }
+
+    // --- Helpers ---
+
+    private void fullSync(String courseId, String assignmentId, Assignment assignment, Instant now) {
+        List<CanvasSubmission> all = apiService.getSubmissions(courseId, assignmentId);
+        assignment.byUser.clear();
+        assignment.submittedMark = Instant.EPOCH;
+        assignment.gradedMark = Instant.EPOCH;
+        merge(assignment, all);
+        assignment.fullSyncAt = now;
+        assignment.syncedAt = now;
+    }
+
+    private void incrementalSync(String courseId, String assignmentId, Assignment assignment, Instant now) {
+        // 1. Ask only for what was handed in or graded since the newest submission we hold
+        List<CanvasSubmission> submitted = apiService.getSubmissionsSubmittedSince(courseId, assignmentId,
+                assignment.submittedMark.minus(overlap));
+        List<CanvasSubmission> graded = apiService.getSubmissionsGradedSince(courseId, assignmentId,
+                assignment.gradedMark.minus(overlap));
+
+        // 2. Merge by user; the overlap window means some of these are already current
+        int changed = merge(assignment, submitted) + merge(assignment, graded);
+        assignment.syncedAt = now;
+        if (changed > 0) {
+            logger.info("Submissions of assignment {}: {} changed since the last sync", assignmentId, changed);
+        }
+    }
+
+    // Returns how many submissions were new or different
+    private static int merge(Assignment assignment, List<CanvasSubmission> submissions) {
+        int changed = 0;
+        for (CanvasSubmission s : submissions) {
+            CanvasSubmission previous = assignment.byUser.put(s.user_id(), s);
+            if (previous == null || !previous.fingerprint().equals(s.fingerprint())) {
+                changed++;
+            }
+            assignment.submittedMark = later(assignment.submittedMark, s.submitted_at());
+            assignment.gradedMark = later(assignment.gradedMark, s.graded_at());
+        }
+        return changed;
+    }
+
+    private static Instant later(Instant mark, String timestamp) {
+        if (timestamp == null) {
+            return mark;
+        }
+        try {
+            Instant at = Instant.parse(timestamp);
+            return at.isAfter(mark) ? at : mark;
+        } catch (DateTimeParseException e) {
+            return mark;
+        }
+    }
+}
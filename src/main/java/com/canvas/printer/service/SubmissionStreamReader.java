@@ -0,0 +1,175 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.QuizSubmissionInfo;
+import com.canvas.printer.model.StudentSubmission;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads Canvas submission payloads token by token straight off the response stream.
+ * Only the fields the merge uses are materialised; everything else (old attempts'
+ * metadata, attachments, rubric data...) is skipped without building a tree.
+ */
+public class SubmissionStreamReader {
+
+    private final ObjectMapper mapper;
+
+    public SubmissionStreamReader(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Assignment submission with include[]=submission_history.
+     * History is in attempt order, so each attempt's submission_data replaces the
+     * previous one and at most one attempt's answers are held at a time.
+     */
+    public StudentSubmission readSubmission(InputStream in) throws IOException {
+        try (JsonParser p = mapper.createParser(in)) {
+            expect(p.nextToken(), JsonToken.START_OBJECT, "submission");
+            return readSubmission(p);
+        }
+    }
+
+    // One page of a submissions listing with include[]=submission_history, read one student at a time
+    public List<StudentSubmission> readSubmissions(InputStream in) throws IOException {
+        try (JsonParser p = mapper.createParser(in)) {
+            expect(p.nextToken(), JsonToken.START_ARRAY, "submissions");
+            List<StudentSubmission> submissions = new ArrayList<>();
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                submissions.add(readSubmission(p));
+            }
+            return submissions;
+        }
+    }
+
+    // { "quiz_submissions": [ { ... } ], "meta": { ... } } - only the first entry is read
+    public QuizSubmissionInfo readFirstQuizSubmission(InputStream in) throws IOException {
+        List<QuizSubmissionInfo> list = readQuizSubmissions(in, 1);
+        return list.isEmpty() ? QuizSubmissionInfo.NONE : list.get(0);
+    }
+
+    // One page of { "quiz_submissions": [ ... ], "meta": { ... } }
+    public List<QuizSubmissionInfo> readQuizSubmissions(InputStream in) throws IOException {
+        return readQuizSubmissions(in, Integer.MAX_VALUE);
+    }
+
+    // --- Helpers ---
+
+    // Reads the fields of a submission object whose START_OBJECT was just consumed
+    private StudentSubmission readSubmission(JsonParser p) throws IOException {
+        long userId = 0;
+        String score = "0";
+        JsonNode historyData = null;
+        JsonNode topLevelData = null;
+        int attempt = 0;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "user_id" -> userId = p.getValueAsLong(0);
+                case "score" -> score = (value == JsonToken.VALUE_NULL) ? "0" : p.getText();
+                case "submission_data" -> topLevelData = readArrayOrNull(p);
+                case "submission_history" -> {
+                    if (value != JsonToken.START_ARRAY) {
+                        p.skipChildren();
+                        break;
+                    }
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        // Get latest attempt for answers
+                        JsonNode data = null;
+                        int attemptNumber = 0;
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String name = p.currentName();
+                            p.nextToken();
+                            if ("submission_data".equals(name)) {
+                                data = readArrayOrNull(p);
+                            } else if ("attempt".equals(name)) {
+                                attemptNumber = p.getValueAsInt(0);
+                            } else {
+                                p.skipChildren();
+                            }
+                        }
+                        historyData = data;
+                        attempt = attemptNumber;
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+
+        // Fallback for submission_data if not in history
+        return new StudentSubmission(userId, score, attempt, historyData != null ? historyData : topLevelData);
+    }
+
+    private List<QuizSubmissionInfo> readQuizSubmissions(InputStream in, int limit) throws IOException {
+        try (JsonParser p = mapper.createParser(in)) {
+            expect(p.nextToken(), JsonToken.START_OBJECT, "quiz submissions");
+
+            List<QuizSubmissionInfo> list = new ArrayList<>();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if (!"quiz_submissions".equals(field) || value != JsonToken.START_ARRAY) {
+                    p.skipChildren();
+                    continue;
+                }
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    if (list.size() < limit) {
+                        list.add(readQuizSubmission(p));
+                    } else {
+                        p.skipChildren(); // past the limit: skip the rest of the array
+                    }
+                }
+            }
+            return list;
+        }
+    }
+
+    private QuizSubmissionInfo readQuizSubmission(JsonParser p) throws IOException {
+        String startedAt = null;
+        String finishedAt = null;
+        Integer timeSpent = null;
+        long userId = 0;
+        int quizVersion = 0;
+        int attempt = 0;
+        String keptScore = null;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            boolean isNull = value == JsonToken.VALUE_NULL;
+            switch (name) {
+                case "started_at" -> startedAt = isNull ? null : p.getText();
+                case "finished_at" -> finishedAt = isNull ? null : p.getText();
+                case "time_spent" -> timeSpent = isNull ? null : p.getValueAsInt();
+                case "user_id" -> userId = p.getValueAsLong(0);
+                case "quiz_version" -> quizVersion = p.getValueAsInt(0);
+                case "attempt" -> attempt = p.getValueAsInt(0);
+                case "kept_score" -> keptScore = isNull ? null : p.getText();
+                default -> p.skipChildren();
+            }
+        }
+        return new QuizSubmissionInfo(userId, startedAt, finishedAt, timeSpent, quizVersion, attempt, keptScore);
+    }
+
+    private static JsonNode readArrayOrNull(JsonParser p) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return p.readValueAsTree();
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected, String what) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected " + what + " payload: expected " + expected + " but got " + actual);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.canvas.printer.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Made-up answers to a quiz, for load and correctness testing: by the test student
+ * (QuizAutomationService) or inside the Canvas stand-in and the benchmarks.
+ *
+ * Answers are picked from the question definitions (weight, match_id, blank_id), so
+ * every generated attempt knows which of its answers are right. One attempt comes out
+ * either as submission_data, the way submission_history records it, or as the
+ * quiz_questions a student posts to Canvas.
+ *
+ * Strategies (see {@link Plan#parse(String)}):
+ * - random: any answer, right or wrong
+ * - correct / wrong: every question answered right / wrong
+ * - score:mean:spread: the attempt's share of right answers drawn around mean
+ */
+public final class SyntheticAnswers {
+
+    // Nothing a student selects or types
+    private static final Set<String> UNANSWERABLE = Set.of("text_only_question", "file_upload_question");
+
+    public enum Strategy {
+        RANDOM, CORRECT, WRONG, SCORE
+    }
+
+    /**
+     * How one attempt is answered. mean and spread (0..1) only apply to SCORE;
+     * skipRate is the share of questions left blank.
+     */
+    public record Plan(Strategy strategy, double mean, double spread, double skipRate) {
+
+        public static Plan random() {
+            return new Plan(Strategy.RANDOM, 0, 0, 0);
+        }
+
+        public static Plan correct() {
+            return new Plan(Strategy.CORRECT, 1, 0, 0);
+        }
+
+        public static Plan wrong() {
+            return new Plan(Strategy.WRONG, 0, 0, 0);
+        }
+
+        public static Plan score(double mean, double spread) {
+            return new Plan(Strategy.SCORE, mean, spread, 0);
+        }
+
+        public Plan skipping(double skipRate) {
+            return new Plan(strategy, mean, spread, skipRate);
+        }
+
+        /**
+         * "random", "correct", "wrong" or "score:mean[:spread]", optionally followed by
+         * "@skipRate": e.g. "score:0.7:0.15@0.1".
+         */
+        public static Plan parse(String spec) {
+            String[] skip = spec.trim().split("@", 2);
+            String[] parts = skip[0].split(":");
+            Plan plan = switch (parts[0].toLowerCase(Locale.ROOT)) {
+                case "random" -> random();
+                case "correct" -> correct();
+                case "wrong" -> wrong();
+                case "score" -> score(parts.length > 1 ? Double.parseDouble(parts[1]) : 0.7,
+                        parts.length > 2 ? Double.parseDouble(parts[2]) : 0);
+                default -> throw new IllegalArgumentException("Unknown answer strategy: " + spec);
+            };
+            return (skip.length > 1) ? plan.skipping(Double.parseDouble(skip[1])) : plan;
+        }
+    }
+
+    private final ObjectMapper mapper;
+
+    public SyntheticAnswers(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * One attempt as submission_history's submission_data: one entry per answered
+     * question, with "correct" and "points" set from the definitions.
+     */
+    public ArrayNode submissionData(JsonNode questions, Plan plan, Random random) {
+        // 1. The attempt's target score, for SCORE
+        double target = Math.clamp(plan.mean() + plan.spread() * random.nextGaussian(), 0.0, 1.0);
+
+        // 2. Decide right or wrong per question, then pick answers to match
+        ArrayNode data = mapper.createArrayNode();
+        for (JsonNode question : questions) {
+            if (UNANSWERABLE.contains(question.path("question_type").asText())
+                    || random.nextDouble() < plan.skipRate()) {
+                continue;
+            }
+            Boolean right = switch (plan.strategy()) {
+                case RANDOM -> null;
+                case CORRECT -> true;
+                case WRONG -> false;
+                case SCORE -> random.nextDouble() < target;
+            };
+            data.add(answer(question, right, random));
+        }
+        return data;
+    }
+
+    /**
+     * One attempt as the quiz_questions of POST /quiz_submissions/:id/questions.
+     */
+    public ArrayNode quizQuestions(JsonNode questions, Plan plan, Random random) {
+        Map<Long, JsonNode> byId = new HashMap<>();
+        for (JsonNode question : questions) {
+            byId.put(question.path("id").asLong(), question);
+        }
+        ArrayNode quizQuestions = mapper.createArrayNode();
+        for (JsonNode entry : submissionData(questions, plan, random)) {
+            JsonNode question = byId.get(entry.path("question_id").asLong());
+            ObjectNode posted = quizQuestions.addObject().put("id", entry.path("question_id").asLong());
+            posted.set("answer", postedAnswer(question, entry));
+        }
+        return quizQuestions;
+    }
+
+    // --- Helpers ---
+
+    // right: null for "whatever comes up"
+    private ObjectNode answer(JsonNode question, Boolean right, Random random) {
+        ObjectNode entry = mapper.createObjectNode().put("question_id", question.path("id").asLong());
+        JsonNode options = question.path("answers");
+        String type = question.path("question_type").asText("");
+        boolean correct = switch (type) {
+            case "multiple_answers_question" -> multipleAnswers(entry, options, right, random);
+            case "matching_question" -> matching(entry, options, question.path("matches"), right, random);
+            case "multiple_dropdowns_question" -> dropdowns(entry, options, right, random);
+            case "fill_in_multiple_blanks_question" -> blanks(entry, options, right, random);
+            case "short_answer_question" -> shortAnswer(entry, options, right, random);
+            case "numerical_question" -> numerical(entry, options, right, random);
+            case "essay_question" -> {
+                entry.put("text", "<p>Synthetic essay answer.</p>");
+                yield false; // graded by hand
+            }
+            default -> singleChoice(entry, options, right, random);
+        };
+        return entry.put("correct", correct)
+                .put("points", correct ? question.path("points_possible").asDouble(1.0) : 0.0);
+    }
+
+    private static boolean singleChoice(ObjectNode entry, JsonNode options, Boolean right, Random random) {
+        JsonNode chosen = pick(options, right, random);
+        if (chosen == null) {
+            return false;
+        }
+        entry.put("answer_id", chosen.path("id").asLong());
+        return isCorrect(chosen);
+    }
+
+    // Right: exactly the weighted options. Wrong: that set with one option flipped.
+    private static boolean multipleAnswers(ObjectNode entry, JsonNode options, Boolean right, Random random) {
+        int n = options.size();
+        boolean[] picked = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            picked[i] = (right == null) ? random.nextBoolean() : isCorrect(options.get(i));
+        }
+        if (Boolean.FALSE.equals(right) && n > 0) {
+            int flip = random.nextInt(n);
+            picked[flip] = !picked[flip];
+        }
+        boolean correct = true;
+        for (int i = 0; i < n; i++) {
+            entry.put("answer_" + options.get(i).path("id").asLong(), picked[i] ? "1" : "0");
+            correct &= picked[i] == isCorrect(options.get(i));
+        }
+        return correct;
+    }
+
+    // Right: every left side to its match_id. Wrong: one left side to another match.
+    private static boolean matching(ObjectNode entry, JsonNode options, JsonNode matches, Boolean right,
+            Random random) {
+        int n = options.size();
+        if (n == 0 || matches.isEmpty()) {
+            return false;
+        }
+        long[] chosen = new long[n];
+        for (int i = 0; i < n; i++) {
+            chosen[i] = (right == null)
+                    ? matches.get(random.nextInt(matches.size())).path("match_id").asLong()
+                    : options.get(i).path("match_id").asLong();
+        }
+        if (Boolean.FALSE.equals(right) && matches.size() > 1) {
+            int i = random.nextInt(n);
+            long correctMatch = chosen[i];
+            while (chosen[i] == correctMatch) {
+                chosen[i] = matches.get(random.nextInt(matches.size())).path("match_id").asLong();
+            }
+        }
+        boolean correct = true;
+        for (int i = 0; i < n; i++) {
+            entry.put("answer_" + options.get(i).path("id").asLong(), String.valueOf(chosen[i]));
+            correct &= chosen[i] == options.get(i).path("match_id").asLong();
+        }
+        return correct;
+    }
+
+    // One choice per blank; wrong picks a wrong choice in every blank that has one
+    private static boolean dropdowns(ObjectNode entry, JsonNode options, Boolean right, Random random) {
+        boolean correct = true;
+        for (Map.Entry<String, List<JsonNode>> blank : byBlank(options).entrySet()) {
+            JsonNode chosen = pick(blank.getValue(), right, random);
+            entry.put("answer_for_" + blank.getKey(), chosen.path("id").asLong());
+            correct &= isCorrect(chosen);
+        }
+        return correct;
+    }
+
+    // Typed text per blank: an accepted answer's text, or text no answer accepts
+    private static boolean blanks(ObjectNode entry, JsonNode options, Boolean right, Random random) {
+        boolean correct = true;
+        for (Map.Entry<String, List<JsonNode>> blank : byBlank(options).entrySet()) {
+            boolean typeRight = (right == null) ? random.nextBoolean() : right;
+            JsonNode accepted = blank.getValue().get(random.nextInt(blank.getValue().size()));
+            if (typeRight) {
+                entry.put("answer_for_" + blank.getKey(), accepted.path("text").asText())
+                        .put("answer_id_for_" + blank.getKey(), accepted.path("id").asLong());
+            } else {
+                entry.put("answer_for_" + blank.getKey(), "synthetic wrong answer");
+            }
+            correct &= typeRight;
+        }
+        return correct;
+    }
+
+    private static boolean shortAnswer(ObjectNode entry, JsonNode options, Boolean right, Random random) {
+        boolean typeRight = ((right == null) ? random.nextBoolean() : right) && !options.isEmpty();
+        if (typeRight) {
+            JsonNode accepted = options.get(random.nextInt(options.size()));
+            entry.put("text", accepted.path("text").asText()).put("answer_id", accepted.path("id").asLong());
+        } else {
+            entry.put("text", "synthetic wrong answer");
+        }
+        return typeRight;
+    }
+
+    // Exact and range answers: the exact value or the range start; wrong is far outside any margin
+    private static boolean numerical(ObjectNode entry, JsonNode options, Boolean right, Random random) {
+        if (options.isEmpty()) {
+            return false;
+        }
+        JsonNode accepted = options.get(random.nextInt(options.size()));
+        double value = accepted.has("exact") ? accepted.path("exact").asDouble() : accepted.path("start").asDouble();
+        boolean typeRight = (right == null) ? random.nextBoolean() : right;
+        if (typeRight) {
+            entry.put("answer_id", accepted.path("id").asLong());
+        }
+        entry.put("text", String.valueOf(typeRight ? value : value + 1_000_000));
+        return typeRight;
+    }
+
+    // A right or wrong option as asked, or any option when there is none of that kind
+    private static JsonNode pick(Iterable<JsonNode> options, Boolean right, Random random) {
+        List<JsonNode> all = new ArrayList<>();
+        List<JsonNode> wanted = new ArrayList<>();
+        for (JsonNode option : options) {
+            all.add(option);
+            if (right == null || isCorrect(option) == right) {
+                wanted.add(option);
+            }
+        }
+        List<JsonNode> from = wanted.isEmpty() ? all : wanted;
+        return from.isEmpty() ? null : from.get(random.nextInt(from.size()));
+    }
+
+    private static boolean isCorrect(JsonNode option) {
+        return option.path("weight").asInt(0) > 0;
+    }
+
+    // Options by blank_id, blanks in the order they first appear
+    private static Map<String, List<JsonNode>> byBlank(JsonNode options) {
+        Map<String, List<JsonNode>> blanks = new LinkedHashMap<>();
+        for (JsonNode option : options) {
+            blanks.computeIfAbsent(option.path("blank_id").asText(""), k -> new ArrayList<>()).add(option);
+        }
+        return blanks;
+    }
+
+    // submission_data entry -> the "answer" Canvas expects for that question type
+    private JsonNode postedAnswer(JsonNode question, JsonNode entry) {
+        JsonNode options = question.path("answers");
+        switch (question.path("question_type").asText("")) {
+            case "multiple_answers_question" -> {
+                ArrayNode ids = mapper.createArrayNode();
+                for (JsonNode option : options) {
+                    if ("1".equals(entry.path("answer_" + option.path("id").asLong()).asText())) {
+                        ids.add(option.path("id").asLong());
+                    }
+                }
+                return ids;
+            }
+            case "matching_question" -> {
+                ArrayNode pairs = mapper.createArrayNode();
+                for (JsonNode option : options) {
+                    pairs.addObject().put("answer_id", option.path("id").asLong())
+                            .put("match_id", entry.path("answer_" + option.path("id").asLong()).asLong());
+                }
+                return pairs;
+            }
+            case "multiple_dropdowns_question", "fill_in_multiple_blanks_question" -> {
+                ObjectNode blanks = mapper.createObjectNode();
+                Set<String> seen = new HashSet<>();
+                for (JsonNode option : options) {
+                    String blank = option.path("blank_id").asText("");
+                    if (seen.add(blank)) {
+                        blanks.set(blank, entry.path("answer_for_" + blank));
+                    }
+                }
+                return blanks;
+            }
+            case "short_answer_question", "numerical_question", "essay_question" -> {
+                return entry.path("text");
+            }
+            default -> {
+                return entry.path("answer_id");
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.canvas.printer.load;
+
+import com.canvas.printer.service.CanvasRateLimiter;
+import com.canvas.printer.sim.CanvasSimulator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the dashboards and /print against the in-JVM CanvasSimulator at a fixed
+ * concurrency and reports latency percentiles and throughput per route.
+ * Excluded from the normal build; run with
+ *
+ * ./mvnw -Pload test
+ * ./mvnw -Pload test -Dload.concurrency=128 -Dsim.latency=PT0.2S -Dsim.throttle-rate=0.02
+ *
+ * Settings (system properties):
+ * load.concurrency (32), load.warmup (PT5S), load.duration (PT30S),
+ * load.mix (home=1,submissions=2,print=6,printAll=1),
+ * sim.latency (PT0.05S), sim.jitter (PT0.02S), sim.page-size (100), sim.error-rate (0),
+ * sim.throttle-rate (0), sim.bucket (0 = off; 700 for Canvas), sim.bucket-refill (10),
+ * sim.students (40), sim.quizzes (5), sim.questions (50), sim.attempts (2)
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PrintLoadTest {
+
+    // The course the dashboard shows (the default canvas.dashboard.course-ids)
+    private static final String COURSE_ID = "13295775";
+
+    private static final CanvasSimulator canvas = new CanvasSimulator()
+            .latency(duration("sim.latency", "PT0.05S"), duration("sim.jitter", "PT0.02S"))
+            .maxPageSize(Integer.getInteger("sim.page-size", 100))
+            .errorRate(number("sim.error-rate", 0))
+            .throttleRate(number("sim.throttle-rate", 0))
+            .rateLimit(number("sim.bucket", 0), number("sim.bucket-refill", 10), 1)
+            .courseShape(Integer.getInteger("sim.students", 40), Integer.getInteger("sim.quizzes", 5),
+                    Integer.getInteger("sim.questions", 50), Integer.getInteger("sim.attempts", 2));
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    CanvasRateLimiter rateLimiter;
+
+    @DynamicPropertySource
+    static void canvasProperties(DynamicPropertyRegistry registry) throws Exception {
+        Path cacheDir = Files.createTempDirectory("quiz-printer-load");
+        registry.add("canvas.api.url", canvas::url);
+        registry.add("canvas.api.token", () -> "load-test");
+        registry.add("canvas.http-cache.dir", cacheDir::toString);
+        registry.add("canvas.snapshots.dir", () -> cacheDir.resolve("snapshots").toString());
+    }
+
+    @AfterAll
+    static void stopCanvas() {
+        canvas.close();
+    }
+
+    @Test
+    void dashboardsAndPrint() throws Exception {
+        int concurrency = Integer.getInteger("load.concurrency", 32);
+        Duration warmup = duration("load.warmup", "PT5S");
+        Duration duration = duration("load.duration", "PT30S");
+        Map<String, Integer> mix = mix(System.getProperty("load.mix", "home=1,submissions=2,print=6,printAll=1"));
+
+        List<long[]> quizzes = canvas.quizAndAssignmentIds(COURSE_ID);
+        List<Long> students = canvas.submittedStudentIds(COURSE_ID);
+        String base = "http://localhost:" + port;
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+        RouteMix routes = new RouteMix(mix, route -> {
+            long[] quiz = quizzes.get(ThreadLocalRandom.current().nextInt(quizzes.size()));
+            long student = students.get(ThreadLocalRandom.current().nextInt(students.size()));
+            String prefix = COURSE_ID + "/" + quiz[0] + "/" + quiz[1];
+            return switch (route) {
+                // The course panel: "/" itself is a shell that makes no Canvas call
+                case "home" -> base + "/course/" + COURSE_ID + "/quizzes";
+                case "submissions" -> base + "/course/" + COURSE_ID + "/quiz/" + quiz[0] + "/assignment/" + quiz[1]
+                        + "/submissions";
+                case "print" -> base + "/print/" + prefix + "/" + student;
+                case "printAll" -> base + "/print/" + prefix + "/all";
+                default -> throw new IllegalArgumentException("Unknown route " + route);
+            };
+        });
+
+        run(client, routes, concurrency, warmup);
+        Map<String, Stats> results = run(client, routes, concurrency, duration);
+        report(results, concurrency, duration);
+
+        for (Map.Entry<String, Stats> result : results.entrySet()) {
+            assertThat(result.getValue().ok).as("successful %s requests", result.getKey()).isPositive();
+        }
+    }
+
+    // Closed loop: every worker sends its next request as soon as the previous one returns
+    private Map<String, Stats> run(HttpClient client, RouteMix routes, int concurrency, Duration duration)
+            throws InterruptedException {
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        routes.names().forEach(name -> stats.put(name, new Stats()));
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                workers.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        String route = routes.pick();
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(routes.url(route)))
+                                .timeout(Duration.ofSeconds(120))
+                                .GET()
+                                .build();
+                        long start = System.nanoTime();
+                        boolean ok;
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            ok = response.statusCode() == 200;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        } catch (Exception e) {
+                            ok = false;
+                        }
+                        stats.get(route).record(System.nanoTime() - start, ok);
+                    }
+                });
+            }
+        }
+        return stats;
+    }
+
+    private void report(Map<String, Stats> results, int concurrency, Duration duration) {
+        double seconds = duration.toNanos() / 1e9;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%nLoad test: %d workers for %ss against %s%n", concurrency, seconds, canvas.url()));
+        out.append(String.format("%-12s %8s %7s %9s %9s %9s %9s %9s%n",
+                "route", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+
+        Stats total = new Stats();
+        for (Map.Entry<String, Stats> entry : results.entrySet()) {
+            Stats s = entry.getValue();
+            total.merge(s);
+            out.append(line(entry.getKey(), s, seconds));
+        }
+        out.append(line("total", total, seconds));
+        out.append(String.format("Canvas requests: %s%n", canvas.requestCounts()));
+        out.append(String.format("Rate limiter: concurrency %d, last remaining %s%n",
+                rateLimiter.currentLimit(), rateLimiter.lastRemaining()));
+        System.out.println(out);
+    }
+
+    private static String line(String route, Stats s, double seconds) {
+        long[] sorted = s.sorted();
+        return String.format("%-12s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", route, sorted.length, s.errors,
+                sorted.length / seconds, millis(sorted, 0.50), millis(sorted, 0.95), millis(sorted, 0.99),
+                millis(sorted, 1.0));
+    }
+
+    // Nearest-rank percentile
+    private static double millis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+
+    // --- Settings ---
+
+    private static Duration duration(String property, String fallback) {
+        return Duration.parse(System.getProperty(property, fallback));
+    }
+
+    private static double number(String property, double fallback) {
+        String value = System.getProperty(property);
+        return (value == null) ? fallback : Double.parseDouble(value);
+    }
+
+    private static Map<String, Integer> mix(String spec) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight > 0) {
+                weights.put(kv[0].trim(), weight);
+            }
+        }
+        return weights;
+    }
+
+    // --- Helpers ---
+
+    private interface UrlFactory {
+        String url(String route);
+    }
+
+    // Weighted random choice of route
+    private record RouteMix(Map<String, Integer> weights, UrlFactory urls) {
+
+        List<String> names() {
+            return new ArrayList<>(weights.keySet());
+        }
+
+        String pick() {
+            int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+            int roll = ThreadLocalRandom.current().nextInt(total);
+            for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+                roll -= entry.getValue();
+                if (roll < 0) {
+                    return entry.getKey();
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        String url(String route) {
+            return urls.url(route);
+        }
+    }
+
+    // Latencies of every request (errors included), in nanoseconds
+    private static final class Stats {
+        private long[] samples = new long[1024];
+        private int count;
+        private int ok;
+        private int errors;
+
+        synchronized void record(long nanos, boolean success) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+            if (success) {
+                ok++;
+            } else {
+                errors++;
+            }
+        }
+
+        synchronized void merge(Stats other) {
+            long[] theirs = other.sorted();
+            for (long sample : theirs) {
+                record(sample, true);
+            }
+            ok -= other.errors;
+            errors += other.errors;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(samples, count);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.sim.CanvasSimulator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CanvasHttpClientTest {
+
+    private final CanvasSimulator canvas = new CanvasSimulator().courseShape(5, 1, 5, 1);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void stopCanvas() {
+        canvas.close();
+    }
+
+    @Test
+    void retriesAFailingGetAndHandsBackTheLastAnswer() throws Exception {
+        CanvasHttpClient client = client(2, 10, Duration.ofSeconds(30));
+        canvas.errorRate(1);
+
+        assertThat(status(client, get(client))).isEqualTo(500);
+        assertThat(canvas.requestCounts()).containsEntry("quizzes", 3L);
+        assertThat(registry.counter("canvas.api.retries").count()).isEqualTo(2);
+    }
+
+    @Test
+    void recoversWhenARetrySucceeds() throws Exception {
+        CanvasHttpClient client = client(2, 10, Duration.ofSeconds(30));
+        canvas.errorRate(1);
+        assertThat(status(client, get(client))).isEqualTo(500);
+        canvas.errorRate(0);
+
+        assertThat(status(client, get(client))).isEqualTo(200);
+        assertThat(canvas.requestCounts()).containsEntry("quizzes", 4L);
+    }
+
+    @Test
+    void neverRetriesAPost() throws Exception {
+        CanvasHttpClient client = client(2, 10, Duration.ofSeconds(30));
+        canvas.errorRate(1);
+
+        HttpRequest post = client.request(canvas.url() + "/api/v1/courses/1/quizzes/1/reports")
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+        assertThat(status(client, post)).isEqualTo(500);
+        assertThat(canvas.requestCounts().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(1);
+    }
+
+    @Test
+    void opensAfterFailuresInARowAndFailsFast() throws Exception {
+        CanvasHttpClient client = client(0, 3, Duration.ofSeconds(30));
+        canvas.errorRate(1);
+        for (int i = 0; i < 3; i++) {
+            assertThat(status(client, get(client))).isEqualTo(500);
+        }
+
+        assertThat(client.isOpen()).isTrue();
+        assertThatThrownBy(() -> client.send(get(client)))
+                .isInstanceOf(CanvasHttpClient.CanvasUnavailableException.class);
+        assertThat(canvas.requestCounts()).containsEntry("quizzes", 3L);
+    }
+
+    @Test
+    void aSuccessResetsTheFailureCount() throws Exception {
+        CanvasHttpClient client = client(0, 3, Duration.ofSeconds(30));
+        for (double errorRate : new double[] { 1, 1, 0, 1, 1 }) {
+            canvas.errorRate(errorRate);
+            status(client, get(client));
+        }
+
+        assertThat(client.isOpen()).isFalse();
+    }
+
+    @Test
+    void aTrialCallReopensOrClosesTheBreaker() throws Exception {
+        CanvasHttpClient client = client(0, 2, Duration.ofMillis(200));
+        canvas.errorRate(1);
+        status(client, get(client));
+        status(client, get(client));
+        assertThat(client.isOpen()).isTrue();
+
+        // Still failing: the one trial call goes through and the breaker opens again
+        Thread.sleep(300);
+        assertThat(status(client, get(client))).isEqualTo(500);
+        assertThat(client.isOpen()).isTrue();
+        assertThatThrownBy(() -> client.send(get(client)))
+                .isInstanceOf(CanvasHttpClient.CanvasUnavailableException.class);
+        assertThat(canvas.requestCounts()).containsEntry("quizzes", 3L);
+
+        // Recovered: the trial call closes it
+        Thread.sleep(300);
+        canvas.errorRate(0);
+        assertThat(status(client, get(client))).isEqualTo(200);
+        assertThat(client.isOpen()).isFalse();
+        assertThat(status(client, get(client))).isEqualTo(200);
+    }
+
+    // --- Helpers ---
+
+    private CanvasHttpClient client(int maxRetries, int breakerFailures, Duration breakerOpenFor) {
+        CanvasRateLimiter rateLimiter = new CanvasRateLimiter(4, 1, 16, 150, 0, Duration.ofMillis(10));
+        return new CanvasHttpClient("test", Duration.ofSeconds(2), Duration.ofSeconds(5), "file-store=PT5S",
+                maxRetries, Duration.ofMillis(10), breakerFailures, breakerOpenFor, rateLimiter, registry);
+    }
+
+    private HttpRequest get(CanvasHttpClient client) {
+        return client.request(canvas.url() + "/api/v1/courses/1/quizzes").GET().build();
+    }
+
+    private static int status(CanvasHttpClient client, HttpRequest request) throws Exception {
+        HttpResponse<InputStream> response = client.send(request);
+        try (InputStream body = response.body()) {
+            body.readAllBytes();
+        }
+        return response.statusCode();
+    }
+}
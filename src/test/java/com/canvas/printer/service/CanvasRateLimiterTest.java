@@ -0,0 +1,97 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.sim.CanvasSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CanvasRateLimiterTest {
+
+    private final CanvasSimulator canvas = new CanvasSimulator().courseShape(5, 1, 5, 1);
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @AfterEach
+    void stopCanvas() {
+        canvas.close();
+    }
+
+    @Test
+    void addsASlotAfterEachFullWindowOfHealthyResponses() throws Exception {
+        CanvasRateLimiter limiter = limiter(2, 1, 3, 0);
+
+        send(limiter);
+        assertThat(limiter.currentLimit()).isEqualTo(2);
+        send(limiter);
+        assertThat(limiter.currentLimit()).isEqualTo(3);
+        for (int i = 0; i < 6; i++) {
+            send(limiter);
+        }
+        assertThat(limiter.currentLimit()).isEqualTo(3); // the maximum
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    void halvesOnAThrottleAtMostOncePerSecond() throws Exception {
+        CanvasRateLimiter limiter = limiter(8, 1, 16, 0);
+        canvas.throttleRate(1);
+
+        assertThat(send(limiter).statusCode()).isEqualTo(403);
+        assertThat(limiter.currentLimit()).isEqualTo(4);
+        assertThat(limiter.lastRemaining()).isZero();
+
+        // A burst of throttles is one signal, not several
+        send(limiter);
+        assertThat(limiter.currentLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void neverGoesBelowTheMinimum() throws Exception {
+        CanvasRateLimiter limiter = limiter(2, 2, 16, 0);
+        canvas.throttleRate(1);
+
+        send(limiter);
+
+        assertThat(limiter.currentLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void retriesAThrottledRequestBeforeHandingItBack() throws Exception {
+        CanvasRateLimiter limiter = limiter(4, 1, 16, 2);
+        canvas.throttleRate(1);
+
+        assertThat(send(limiter).statusCode()).isEqualTo(403);
+        assertThat(canvas.requestCounts()).containsEntry("quizzes", 3L);
+
+        canvas.throttleRate(0);
+        assertThat(send(limiter).statusCode()).isEqualTo(200);
+    }
+
+    @Test
+    void cutsByAQuarterWhenTheBucketRunsLow() throws Exception {
+        CanvasRateLimiter limiter = limiter(8, 1, 16, 0);
+        canvas.rateLimit(100, 0, 1); // below the low-water mark of 150 from the first call
+
+        assertThat(send(limiter).statusCode()).isEqualTo(200);
+
+        assertThat(limiter.currentLimit()).isEqualTo(6);
+        assertThat(limiter.lastRemaining()).isEqualTo(99);
+    }
+
+    // --- Helpers ---
+
+    private static CanvasRateLimiter limiter(int initial, int min, int max, int maxRetries) {
+        return new CanvasRateLimiter(initial, min, max, 150, maxRetries, Duration.ofMillis(10));
+    }
+
+    private HttpResponse<String> send(CanvasRateLimiter limiter) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(canvas.url() + "/api/v1/courses/1/quizzes")).build();
+        return limiter.send(client, request, HttpResponse.BodyHandlers.ofString());
+    }
+}
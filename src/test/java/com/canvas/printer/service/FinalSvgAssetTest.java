@@ -0,0 +1,52 @@
+package com.canvas.printer.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FinalSvgAssetTest {
+
+    @Test
+    void roundsGeometryInsteadOfTruncatingIt() {
+        String svg = FinalSvgAsset.minify("""
+                <svg th:fragment="final (w, h)" viewBox="0 0 1448 1504">
+                  <!-- drawing -->
+                  <path d="M10.126 20.004L-3.995 7.5e-3Z" transform="translate(1.999 -0.004)"/>
+                  <polygon points="1.125,2.135 3.1449,4"/>
+                </svg>
+                """, 2);
+
+        assertThat(svg).isEqualTo("<svg viewBox=\"0 0 1448 1504\">"
+                + "<path d=\"M10.13 20L-4 0.01Z\" transform=\"translate(2 0)\"/>"
+                + "<polygon points=\"1.13,2.14 3.14,4\"/></svg>");
+    }
+
+    @Test
+    void keepsNumbersThatRunTogetherApart() {
+        String svg = FinalSvgAsset.minify("<svg><path d=\"m1.254.756.3.25\"/></svg>", 1);
+
+        assertThat(svg).isEqualTo("<svg><path d=\"m1.3 0.8 0.3 0.3\"/></svg>");
+    }
+
+    @Test
+    void dropsTheSignOfAValueThatRoundsToZero() {
+        String svg = FinalSvgAsset.minify("<svg><path d=\"M1.5-0.001 2-0.004\"/></svg>", 2);
+
+        assertThat(svg).isEqualTo("<svg><path d=\"M1.5 0 2 0\"/></svg>");
+    }
+
+    @Test
+    void leavesEverythingButGeometryAlone() {
+        String fragment = "<svg><g id=\"layer1.2345\" style=\"opacity:0.12345\">"
+                + "<circle cx=\"1.23456\" r=\"2.5\"/></g></svg>";
+
+        assertThat(FinalSvgAsset.minify(fragment, 2)).isEqualTo(fragment);
+    }
+
+    @Test
+    void aNegativePrecisionKeepsEveryDigit() {
+        String fragment = "<svg><path d=\"M1.23456 2.34567\"/></svg>";
+
+        assertThat(FinalSvgAsset.minify(fragment, -1)).isEqualTo(fragment);
+    }
+}
@@ -0,0 +1,54 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.PrintableQuiz;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrintBatchTest {
+
+    private record Merged(String studentId, PrintableQuiz quiz, Throwable failure) {
+    }
+
+    @Test
+    void leavesOutAFailingStudentAndTellsTheListenerWhy() {
+        List<Merged> reported = Collections.synchronizedList(new ArrayList<>());
+        IllegalStateException cause = new IllegalStateException("submission 102 has no answers");
+        List<PrintableQuiz> printed = new ArrayList<>();
+
+        try (PrintBatch batch = new PrintBatch("Quiz", List.of("101", "102", "103", "104"), studentId -> {
+            if (studentId.equals("102")) {
+                throw cause;
+            }
+            return studentId.equals("103") ? null : sheet(studentId);
+        }, 2).onMerged((studentId, quiz, failure) -> reported.add(new Merged(studentId, quiz, failure)))) {
+            batch.forEach(printed::add);
+        }
+
+        assertThat(printed).extracting(PrintableQuiz::studentId).containsExactly("101", "104");
+        assertThat(reported).hasSize(4);
+        assertThat(reported).filteredOn(m -> m.studentId().equals("102")).singleElement()
+                .satisfies(m -> {
+                    assertThat(m.quiz()).isNull();
+                    assertThat(m.failure()).isSameAs(cause);
+                });
+        // Left out without an error: nothing to print for them
+        assertThat(reported).filteredOn(m -> m.studentId().equals("103")).singleElement()
+                .satisfies(m -> {
+                    assertThat(m.quiz()).isNull();
+                    assertThat(m.failure()).isNull();
+                });
+        assertThat(reported).filteredOn(m -> m.quiz() != null).extracting(Merged::failure).containsOnlyNulls();
+    }
+
+    // --- Helpers ---
+
+    private static PrintableQuiz sheet(String studentId) {
+        return new PrintableQuiz("7", studentId, "Quiz", "Student " + studentId, "3 / 5", "", "", "", 1, 5, 0,
+                List.of(), List.of());
+    }
+}
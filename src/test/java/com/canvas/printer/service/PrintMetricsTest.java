@@ -0,0 +1,58 @@
+package com.canvas.printer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrintMetricsTest {
+
+    private final PrintMetrics metrics = new PrintMetrics(new SimpleMeterRegistry());
+
+    @Test
+    void threadsCreatedDuringARequestDoNotKeepIt() throws Exception {
+        try (ExecutorService pool = Executors.newSingleThreadExecutor()) {
+            try (PrintMetrics.ServerTiming timing = metrics.startRequest()) {
+                // The pool's thread is created now, while the request is current
+                assertThat(pool.submit(PrintMetrics::current).get()).isNull();
+            }
+            assertThat(pool.submit(PrintMetrics::current).get()).isNull();
+        }
+    }
+
+    @Test
+    void forkedWorkAddsToTheRequestItIsHanded() throws Exception {
+        try (PrintMetrics.ServerTiming timing = metrics.startRequest();
+                ExecutorService pool = Executors.newSingleThreadExecutor()) {
+            pool.submit(() -> PrintMetrics.callWith(timing, () -> {
+                metrics.mergePhase("merge", System.nanoTime());
+                return null;
+            })).get();
+
+            assertThat(timing.header()).startsWith("merge;dur=").endsWith("desc=\"1 calls\"");
+            assertThat(pool.submit(PrintMetrics::current).get()).isNull(); // not left behind
+        }
+    }
+
+    @Test
+    void fetchScopeCallsAddToTheRequestThatOpenedIt() {
+        try (PrintMetrics.ServerTiming timing = metrics.startRequest();
+                CanvasFetchScope scope = new CanvasFetchScope(Duration.ofSeconds(5))) {
+            scope.fork("one", () -> {
+                metrics.mergePhase("fetch", System.nanoTime());
+                return null;
+            });
+            scope.fork("two", () -> {
+                metrics.mergePhase("fetch", System.nanoTime());
+                return null;
+            });
+            scope.join();
+
+            assertThat(timing.header()).startsWith("fetch;dur=").endsWith("desc=\"2 calls\"");
+        }
+    }
+}
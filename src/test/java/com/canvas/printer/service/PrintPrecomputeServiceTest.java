@@ -0,0 +1,93 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.CanvasQuiz;
+import com.canvas.printer.model.CanvasSubmission;
+import com.canvas.printer.model.PrintableQuiz;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrintPrecomputeServiceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch mergeStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseMerges = new CountDownLatch(1);
+
+    @Test
+    void studentsWaitingForTheBudgetStillCountAsQueued() throws Exception {
+        PrintPrecomputeService precompute = new PrintPrecomputeService(canvas(), submissions(), blockingMerger(),
+                new PrintableQuizStore(Duration.ofMinutes(10), 100), registry, List.of("1"), Duration.ofDays(2), 1);
+
+        Thread scan = Thread.ofVirtual().start(precompute::scan);
+        assertThat(mergeStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Quiz 1 holds the only permit; quiz 2's three students wait for it
+        assertThat(gauge("printer.precompute.queue")).isEqualTo(3);
+        assertThat(gauge("printer.precompute.in-flight")).isEqualTo(3);
+        assertThat(precompute.status().queued()).isEqualTo(3);
+        assertThat(precompute.status().inFlight()).isEqualTo(3);
+
+        releaseMerges.countDown();
+        scan.join(5000);
+        assertThat(scan.isAlive()).isFalse();
+        assertThat(gauge("printer.precompute.queue")).isZero();
+        assertThat(gauge("printer.precompute.in-flight")).isZero();
+    }
+
+    // --- Helpers ---
+
+    private double gauge(String name) {
+        return registry.get(name).gauge().value();
+    }
+
+    private static CanvasApiService canvas() {
+        return new CanvasApiService("http://canvas.invalid", "token", false, null, null, null, null) {
+            @Override
+            public List<CanvasQuiz> getQuizzes(String courseId) {
+                return List.of(quiz(7, 70), quiz(8, 80));
+            }
+        };
+    }
+
+    private static CanvasQuiz quiz(long id, long assignmentId) {
+        return new CanvasQuiz(id, "Quiz " + id, 5, assignmentId, 5, 0, 0, List.of(), null, null);
+    }
+
+    private static SubmissionIndex submissions() {
+        return new SubmissionIndex(null, Duration.ZERO, Duration.ZERO, Duration.ZERO, 10) {
+            @Override
+            public List<CanvasSubmission> getSubmissions(String courseId, String assignmentId) {
+                return List.of(submission(100), submission(101), submission(102));
+            }
+        };
+    }
+
+    private static CanvasSubmission submission(long userId) {
+        return new CanvasSubmission(userId, userId, 3.0, "graded", 1, "2025-11-26T10:00:00Z",
+                "2025-11-26T11:00:00Z");
+    }
+
+    private QuizMergerService blockingMerger() {
+        return new QuizMergerService(null, null, null, null, null, null, null, null, null, Duration.ofSeconds(20), 4,
+                100) {
+            @Override
+            public Map<String, PrintableQuiz> mergePrintableQuizzes(String courseId, String quizId, String assignId,
+                    List<String> studentIds) {
+                mergeStarted.countDown();
+                try {
+                    releaseMerges.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Map.of();
+            }
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.PrintableOption;
+import com.canvas.printer.model.PrintableQuestion;
+import com.canvas.printer.model.PrintableQuiz;
+import com.canvas.printer.service.PrintSnapshotCodec.Key;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrintSnapshotCodecTest {
+
+    private static final Key KEY = new Key("1", "7", "100", 2, 3, "4.5");
+
+    @Test
+    void roundTripsTheKeyAndTheWholeSheet() throws Exception {
+        PrintableQuiz quiz = sheet();
+
+        PrintSnapshotCodec.Snapshot snapshot = PrintSnapshotCodec.decode(PrintSnapshotCodec.encode(KEY, quiz));
+
+        assertThat(snapshot.key()).isEqualTo(KEY);
+        assertThat(snapshot.quiz()).isEqualTo(quiz);
+    }
+
+    @Test
+    void decodesTheKeyAlone() throws Exception {
+        assertThat(PrintSnapshotCodec.decodeKey(PrintSnapshotCodec.encode(KEY, sheet()))).isEqualTo(KEY);
+    }
+
+    @Test
+    void keepsNullsDistinctFromEmptyStrings() throws Exception {
+        Key ungraded = new Key("1", "7", "100", 1, 1, null);
+        PrintableQuiz quiz = new PrintableQuiz("7", "100", "Quiz", "Student", "", null, "", null, 1, 5, 0,
+                List.of(), List.of());
+
+        PrintSnapshotCodec.Snapshot snapshot = PrintSnapshotCodec.decode(PrintSnapshotCodec.encode(ungraded, quiz));
+
+        assertThat(snapshot.key().score()).isNull();
+        assertThat(snapshot.quiz()).isEqualTo(quiz);
+    }
+
+    @Test
+    void skipsRecordsOfAnotherVersion() throws Exception {
+        byte[] record = PrintSnapshotCodec.encode(KEY, sheet());
+        record[0] = (byte) (PrintSnapshotCodec.VERSION - 1);
+
+        assertThat(PrintSnapshotCodec.decodeKey(record)).isNull();
+        assertThat(PrintSnapshotCodec.decode(record)).isNull();
+    }
+
+    private static PrintableQuiz sheet() {
+        List<PrintableQuestion> questions = List.of(
+                new PrintableQuestion(1, "<p>Pick one — ¿cuál?</p>",
+                        List.of(new PrintableOption("A", true, true, false, null),
+                                new PrintableOption("B", false, false, false, "Not this one")),
+                        "Well done", false),
+                new PrintableQuestion(2, "<p>質問</p>",
+                        List.of(new PrintableOption("C", true, false, false, null)), null, true));
+        return new PrintableQuiz("7", "100", "Quiz 1", "Ana Pérez", "4.5", "Nov 26, 2025 2:23 AM",
+                "Nov 26, 2025 2:46 AM", "23 min", 2, 5, 30, List.of("multiple_choice_question"), questions);
+    }
+}
@@ -0,0 +1,190 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.PrintableOption;
+import com.canvas.printer.model.PrintableQuestion;
+import com.canvas.printer.model.PrintableQuiz;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrintSnapshotStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void servesOnlyTheSameAttemptVersionAndScore() {
+        PrintSnapshotStore store = open(1 << 20, 0.5);
+        store.put("1", "7", "101", 2, 3, sheet("101", 2));
+
+        assertThat(store.get("1", "7", "101", 2, 3, "3.0")).isEqualTo(sheet("101", 2));
+        assertThat(store.get("1", "7", "101", 2, 3, "3")).isNotNull();
+        assertThat(store.get("1", "7", "101", 1, 3, "3.0")).isNull();
+        assertThat(store.get("1", "7", "101", 2, 4, "3.0")).isNull();
+        // Regraded: same attempt, another score
+        assertThat(store.get("1", "7", "101", 2, 3, "2.0")).isNull();
+        store.close();
+    }
+
+    @Test
+    void rebuildsTheIndexOnRestart() {
+        PrintSnapshotStore store = open(1 << 20, 0.5);
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            for (String studentId : List.of("101", "102", "103")) {
+                store.put("1", "7", studentId, attempt, 1, sheet(studentId, attempt));
+            }
+        }
+        store.close();
+
+        PrintSnapshotStore reopened = open(1 << 20, 0.5);
+        assertThat(reopened.quiz("1", "7")).containsOnlyKeys("101", "102", "103");
+        assertThat(reopened.get("1", "7", "102", 2, 1, "3")).isEqualTo(sheet("102", 2));
+        assertThat(reopened.get("1", "7", "102", 1, 1, "3")).isNull();
+        reopened.close();
+    }
+
+    @Test
+    void compactionMovesLiveRecordsAndDeletesMostlyGarbageSegments() throws IOException {
+        long record = recordBytes();
+        // Two records per segment
+        PrintSnapshotStore store = open(2 * record - 1, 0.6);
+        for (String studentId : List.of("101", "102", "103", "104")) {
+            store.put("1", "7", studentId, 1, 1, sheet(studentId, 1));
+        }
+        store.put("1", "7", "101", 2, 1, sheet("101", 2));
+        store.put("1", "7", "103", 2, 1, sheet("103", 2));
+        assertThat(segments()).hasSize(3);
+
+        store.compact();
+
+        // Segments 1 and 2 were half garbage; 102 and 104 were moved to a new one
+        assertThat(segments()).extracting(p -> p.getFileName().toString())
+                .containsExactly("segment-000003.qps", "segment-000004.qps");
+        assertLatest(store);
+        store.close();
+
+        PrintSnapshotStore reopened = open(2 * record - 1, 0.6);
+        assertLatest(reopened);
+        reopened.close();
+    }
+
+    @Test
+    void truncatesATornTailOfTheNewestSegment() throws IOException {
+        long record = recordBytes();
+        PrintSnapshotStore store = open(1 << 20, 0.5);
+        store.put("1", "7", "101", 1, 1, sheet("101", 1));
+        store.put("1", "7", "102", 1, 1, sheet("102", 1));
+        store.close();
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 7); // crashed mid-write
+        }
+
+        PrintSnapshotStore reopened = open(1 << 20, 0.5);
+        assertThat(Files.size(segment)).isEqualTo(record);
+        assertThat(reopened.get("1", "7", "101", 1, 1, "3")).isEqualTo(sheet("101", 1));
+        assertThat(reopened.latest("1", "7", "102")).isNull();
+
+        // Appends continue after the cut
+        reopened.put("1", "7", "102", 1, 1, sheet("102", 1));
+        reopened.close();
+        PrintSnapshotStore again = open(1 << 20, 0.5);
+        assertThat(again.get("1", "7", "102", 1, 1, "3")).isEqualTo(sheet("102", 1));
+        again.close();
+    }
+
+    @Test
+    void skipsACorruptRecordInASealedSegment() throws IOException {
+        long record = recordBytes();
+        // Three records per segment: 101-103 in the sealed one, 104 in the newest
+        PrintSnapshotStore store = open(3 * record - 1, 0.5);
+        for (String studentId : List.of("101", "102", "103", "104")) {
+            store.put("1", "7", studentId, 1, 1, sheet(studentId, 1));
+        }
+        store.close();
+        Path sealed = segments().get(0);
+        long size = Files.size(sealed);
+        overwrite(sealed, record + 20, new byte[] { 0x7f }); // a flipped byte in 102's body
+
+        PrintSnapshotStore reopened = open(3 * record - 1, 0.5);
+        assertThat(Files.size(sealed)).isEqualTo(size);
+        assertThat(reopened.latest("1", "7", "102")).isNull();
+        for (String studentId : List.of("101", "103", "104")) {
+            assertThat(reopened.get("1", "7", studentId, 1, 1, "3")).isEqualTo(sheet(studentId, 1));
+        }
+        reopened.close();
+    }
+
+    @Test
+    void stopsReplayingASealedSegmentWhoseLengthCannotBeTrusted() throws IOException {
+        long record = recordBytes();
+        PrintSnapshotStore store = open(3 * record - 1, 0.5);
+        for (String studentId : List.of("101", "102", "103", "104")) {
+            store.put("1", "7", studentId, 1, 1, sheet(studentId, 1));
+        }
+        store.close();
+        Path sealed = segments().get(0);
+        long size = Files.size(sealed);
+        overwrite(sealed, record, ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).array()); // 102's length
+
+        PrintSnapshotStore reopened = open(3 * record - 1, 0.5);
+        assertThat(Files.size(sealed)).isEqualTo(size);
+        assertThat(reopened.quiz("1", "7")).containsOnlyKeys("101", "104");
+        reopened.close();
+    }
+
+    // --- Helpers ---
+
+    private PrintSnapshotStore open(long segmentBytes, double compactRatio) {
+        return new PrintSnapshotStore(true, dir, segmentBytes, compactRatio);
+    }
+
+    private void assertLatest(PrintSnapshotStore store) {
+        assertThat(store.get("1", "7", "101", 2, 1, "3")).isEqualTo(sheet("101", 2));
+        assertThat(store.get("1", "7", "102", 1, 1, "3")).isEqualTo(sheet("102", 1));
+        assertThat(store.get("1", "7", "103", 2, 1, "3")).isEqualTo(sheet("103", 2));
+        assertThat(store.get("1", "7", "104", 1, 1, "3")).isEqualTo(sheet("104", 1));
+    }
+
+    // The size of one record on disk; every sheet() has the same
+    private long recordBytes() throws IOException {
+        Path probe = dir.resolve("probe");
+        PrintSnapshotStore store = new PrintSnapshotStore(true, probe, 1 << 20, 0.5);
+        store.put("1", "7", "100", 1, 1, sheet("100", 1));
+        store.close();
+        try (Stream<Path> files = Files.list(probe)) {
+            return Files.size(files.findFirst().orElseThrow());
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".qps")).sorted().toList();
+        }
+    }
+
+    private static void overwrite(Path file, long position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+
+    private static PrintableQuiz sheet(String studentId, int attempt) {
+        List<PrintableQuestion> questions = List.of(new PrintableQuestion(1, "<p>Pick one</p>",
+                List.of(new PrintableOption("A", true, true, false, null),
+                        new PrintableOption("B", false, false, false, "Not this one")),
+                null, false));
+        return new PrintableQuiz("7", studentId, "Quiz", "Student " + studentId, "3", "", "", "", attempt, 5, 0,
+                List.of("multiple_choice_question"), questions);
+    }
+}
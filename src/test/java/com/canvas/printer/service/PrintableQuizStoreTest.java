@@ -0,0 +1,46 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.PrintableQuiz;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrintableQuizStoreTest {
+
+    private final PrintableQuizStore store = new PrintableQuizStore(Duration.ofMinutes(10), 100);
+
+    @Test
+    void servesSheetWhileItsFingerprintIsConfirmed() {
+        PrintableQuiz sheet = sheet("100");
+        store.put("1", "7", "100", "1:3.0:graded", sheet);
+
+        assertThat(store.confirm("1", "7", "100", "1:3.0:graded")).isTrue();
+        assertThat(store.get("1", "7", "100")).isSameAs(sheet);
+    }
+
+    @Test
+    void dropsSheetOnceTheSubmissionChanged() {
+        store.put("1", "7", "100", "1:3.0:graded", sheet("100"));
+
+        // Regraded: the old sheet must not be printed while the new one is merged
+        assertThat(store.confirm("1", "7", "100", "1:4.0:graded")).isFalse();
+        assertThat(store.get("1", "7", "100")).isNull();
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    void unconfirmedSheetsExpire() {
+        PrintableQuizStore expiring = new PrintableQuizStore(Duration.ofMillis(-1), 100);
+        expiring.put("1", "7", "100", "1:3.0:graded", sheet("100"));
+
+        assertThat(expiring.get("1", "7", "100")).isNull();
+    }
+
+    private static PrintableQuiz sheet(String studentId) {
+        return new PrintableQuiz("7", studentId, "Quiz", "Student " + studentId, "3 / 5", "", "", "", 1, 5, 0,
+                List.of(), List.of());
+    }
+}
@@ -0,0 +1,201 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.PrintableOption;
+import com.canvas.printer.model.PrintableQuestion;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuizMergePlanTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    // One question of each type the merge handles, plus one whose feedback is in correct_comments
+    private static final String QUESTIONS = """
+            [
+              {"id": 11, "question_type": "multiple_choice_question", "question_text": "<p>Pick one</p>",
+               "neutral_comments": "<p>See chapter 1</p>",
+               "answers": [{"id": 111, "text": "A", "weight": 100, "comments": "Yes"},
+                           {"id": 112, "text": "B", "weight": 0, "comments": "  "},
+                           {"id": 113, "text": "C"}]},
+              {"id": 12, "question_type": "true_false_question", "question_text": "<p>True?</p>",
+               "answers": [{"id": 121, "text": "True", "weight": 100}, {"id": 122, "text": "False", "weight": 0}]},
+              {"id": 13, "question_type": "multiple_answers_question", "question_text": "<p>Pick all</p>",
+               "answers": [{"id": 131, "text": "A", "weight": 100}, {"id": 132, "text": "B", "weight": 100},
+                           {"id": 133, "text": "C", "weight": 0}]},
+              {"id": 14, "question_type": "matching_question", "question_text": "<p>Match</p>",
+               "answers": [{"id": 141, "text": "Left 1", "match_id": 1401},
+                           {"id": 142, "text": "Left 2", "match_id": 1402},
+                           {"id": 143, "text": "Left 3", "match_id": 1499}],
+               "matches": [{"match_id": 1401, "text": "Right 1"}, {"match_id": 1402, "text": "Right 2"},
+                           {"match_id": 1403, "text": "Right 3"}]},
+              {"id": 15, "question_type": "multiple_choice_question", "question_text": "<p>Skipped</p>",
+               "neutral_comments": " ", "correct_comments": "<p>See chapter 2</p>",
+               "answers": [{"id": 151, "text": "A", "weight": 100}, {"id": 152, "text": "B", "weight": 0}]}
+            ]
+            """;
+
+    @Test
+    void matchesTheBaselineMergeForEveryStudent() throws Exception {
+        JsonNode questions = mapper.readTree(QUESTIONS);
+        QuizMergePlan plan = QuizMergePlan.compile(questions);
+        List<String> students = List.of(
+                // All right
+                """
+                [{"question_id": 11, "answer_id": 111}, {"question_id": 12, "answer_id": 121},
+                 {"question_id": 13, "answer_131": "1", "answer_132": "1", "answer_133": "0"},
+                 {"question_id": 14, "answer_141": 1401, "answer_142": 1402, "answer_143": 1499}]
+                """,
+                // All wrong, with an unknown match id and a pairing left empty
+                """
+                [{"question_id": 11, "answer_id": 112}, {"question_id": 12, "answer_id": 122},
+                 {"question_id": 13, "answer_133": "1"},
+                 {"question_id": 14, "answer_141": 1402, "answer_142": 9999, "answer_143": 0},
+                 {"question_id": 15, "answer_id": 152}]
+                """,
+                // Answered twice (the first answer counts) and an answer to an unknown question
+                """
+                [{"question_id": 11, "answer_id": 113}, {"question_id": 11, "answer_id": 111},
+                 {"question_id": 99, "answer_id": 991}, {"question_id": 13, "answer_131": "0"}]
+                """,
+                "[]");
+
+        for (String student : students) {
+            JsonNode submissionData = mapper.readTree(student);
+            assertThat(plan.apply(submissionData)).isEqualTo(baseline(questions, submissionData));
+        }
+        assertThat(plan.apply(null)).isEqualTo(baseline(questions, null));
+    }
+
+    @Test
+    void readsEachDropdownFromItsBlank() throws Exception {
+        QuizMergePlan plan = QuizMergePlan.compile(mapper.readTree("""
+                [{"id": 16, "question_type": "multiple_dropdowns_question", "question_text": "<p>Fill in</p>",
+                  "answers": [{"id": 10, "text": "red", "blank_id": "color", "weight": 100},
+                              {"id": 110, "text": "blue", "blank_id": "color", "weight": 0},
+                              {"id": 20, "text": "big", "blank_id": "size", "weight": 100},
+                              {"id": 21, "text": "small", "blank_id": "size", "weight": 0}]}]
+                """));
+
+        // 110 contains "10": the baseline's substring search also ticked option 10
+        PrintableQuestion merged = plan.apply(mapper.readTree("""
+                [{"question_id": 16, "answer_for_color": "110", "answer_for_size": "20"}]
+                """)).get(0);
+
+        assertThat(merged.options()).containsExactly(
+                new PrintableOption("[color] red", true, false, false, null),
+                new PrintableOption("[color] blue", false, true, true, null),
+                new PrintableOption("[size] big", true, true, false, null),
+                new PrintableOption("[size] small", false, false, false, null));
+        assertThat(merged.isUnanswered()).isFalse();
+
+        PrintableQuestion blank = plan.apply(mapper.readTree("""
+                [{"question_id": 16, "answer_for_color": "", "answer_for_size": ""}]
+                """)).get(0);
+        assertThat(blank.isUnanswered()).isTrue();
+    }
+
+    // --- Baseline ---
+
+    // The per-student merge QuizMergerService ran before plans (dropdowns aside), kept as the reference
+    private static List<PrintableQuestion> baseline(JsonNode questions, JsonNode submissionData) {
+        List<PrintableQuestion> merged = new ArrayList<>();
+        int index = 1;
+        for (JsonNode qNode : questions) {
+            merged.add(baselineQuestion(qNode, submissionData, index++));
+        }
+        return merged;
+    }
+
+    private static PrintableQuestion baselineQuestion(JsonNode qNode, JsonNode submissionData, int questionNumber) {
+        long qId = qNode.path("id").asLong();
+        String qType = qNode.path("question_type").asText("unknown");
+        String feedback = qNode.path("neutral_comments").asText(null);
+        if (feedback == null || feedback.trim().isEmpty()) {
+            feedback = qNode.path("correct_comments").asText(null);
+        }
+        if (feedback != null && feedback.trim().isEmpty()) {
+            feedback = null;
+        }
+
+        JsonNode studentAnswerNode = null;
+        if (submissionData != null && submissionData.isArray()) {
+            for (JsonNode answer : submissionData) {
+                if (answer.path("question_id").asLong() == qId) {
+                    studentAnswerNode = answer;
+                    break;
+                }
+            }
+        }
+
+        List<PrintableOption> options = "matching_question".equals(qType)
+                ? baselineMatching(qNode, studentAnswerNode)
+                : baselineStandard(qNode, studentAnswerNode, qType);
+        boolean isUnanswered = options.stream().noneMatch(PrintableOption::isSelected);
+        return new PrintableQuestion(questionNumber, qNode.path("question_text").asText("Question"), options,
+                feedback, isUnanswered);
+    }
+
+    private static List<PrintableOption> baselineMatching(JsonNode qNode, JsonNode studentAnswerNode) {
+        Map<Long, String> matchMap = new HashMap<>();
+        for (JsonNode m : qNode.path("matches")) {
+            matchMap.put(m.path("match_id").asLong(), m.path("text").asText());
+        }
+        List<PrintableOption> options = new ArrayList<>();
+        for (JsonNode ans : qNode.path("answers")) {
+            String leftText = ans.path("text").asText();
+            long correctMatchId = ans.path("match_id").asLong();
+            String correctRightText = matchMap.getOrDefault(correctMatchId, "[Unknown]");
+            boolean isSelected = false;
+            boolean isCorrect = false;
+            String studentChoiceText = " (No Answer)";
+            String key = "answer_" + ans.path("id").asLong();
+            if (studentAnswerNode != null && studentAnswerNode.has(key)) {
+                long studentMatchId = studentAnswerNode.get(key).asLong();
+                if (studentMatchId > 0) {
+                    isSelected = true;
+                    studentChoiceText = matchMap.getOrDefault(studentMatchId, "[Unknown ID]");
+                    isCorrect = studentMatchId == correctMatchId;
+                }
+            }
+            boolean isSelectedAndWrong = isSelected && !isCorrect;
+            String displayText = isSelectedAndWrong
+                    ? leftText + " = " + studentChoiceText + " (Expected: " + correctRightText + ")"
+                    : leftText + " = " + correctRightText;
+            options.add(new PrintableOption(displayText, true, isSelected && isCorrect, isSelectedAndWrong, null));
+        }
+        return options;
+    }
+
+    private static List<PrintableOption> baselineStandard(JsonNode qNode, JsonNode studentAnswerNode, String qType) {
+        List<PrintableOption> options = new ArrayList<>();
+        for (JsonNode ans : qNode.path("answers")) {
+            long optId = ans.path("id").asLong();
+            String comments = ans.path("comments").asText(null);
+            if (comments != null && comments.trim().isEmpty()) {
+                comments = null;
+            }
+            boolean isCorrectKey = ans.path("weight").asInt(0) > 0;
+            boolean isSelected = false;
+            if (studentAnswerNode != null) {
+                if (qType.equals("multiple_answers_question")) {
+                    String key = "answer_" + optId;
+                    isSelected = studentAnswerNode.has(key) && "1".equals(studentAnswerNode.get(key).asText());
+                } else {
+                    isSelected = studentAnswerNode.has("answer_id")
+                            && studentAnswerNode.path("answer_id").asLong() == optId;
+                }
+            }
+            options.add(new PrintableOption(ans.path("text").asText(), isCorrectKey, isSelected,
+                    isSelected && !isCorrectKey, comments));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,120 @@
+package com.canvas.printer.service;
+
+import com.canvas.printer.model.StudentSubmission;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StudentAnalysisReaderTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final String QUESTIONS = """
+            [
+              {"id": 11, "question_type": "multiple_choice_question", "question_text": "<p>Pick one</p>",
+               "answers": [{"id": 111, "text": "Red, or crimson"}, {"id": 112, "text": "<p>Blue   sky</p>"},
+                           {"id": 113, "text": "Say \\"hi\\""}]},
+              {"id": 13, "question_type": "multiple_answers_question", "question_text": "<p>Pick all</p>",
+               "answers": [{"id": 131, "text": "A, B"}, {"id": 132, "text": "C"}, {"id": 133, "text": "D"}]},
+              {"id": 14, "question_type": "matching_question", "question_text": "<p>Match</p>",
+               "answers": [{"id": 141, "text": "Left 1", "match_id": 1401},
+                           {"id": 142, "text": "Left 2", "match_id": 1402}],
+               "matches": [{"match_id": 1401, "text": "Right 1"}, {"match_id": 1402, "text": "Right 2"}]},
+              {"id": 16, "question_type": "multiple_dropdowns_question", "question_text": "<p>Fill in</p>",
+               "answers": [{"id": 161, "text": "red", "blank_id": "color"},
+                           {"id": 162, "text": "blue", "blank_id": "color"},
+                           {"id": 163, "text": "big", "blank_id": "size"},
+                           {"id": 164, "text": "small", "blank_id": "size"}]},
+              {"id": 17, "question_type": "short_answer_question", "question_text": "<p>Capital?</p>",
+               "answers": [{"id": 171, "text": "Paris"}]}
+            ]
+            """;
+
+    private static final String HEADER = "\uFEFFname,id,sis_id,section,submitted,attempt,11: Pick one,1.0,"
+            + "13: Pick all,1.0,14: Match,1.0,16: Fill in,1.0,17: Capital?,1.0,n correct,n incorrect,score\r\n";
+
+    private final StudentAnalysisReader reader = new StudentAnalysisReader(mapper);
+
+    @Test
+    void readsQuotedFieldsAcrossLinesAndStripsTheByteOrderMark() throws IOException {
+        StudentAnalysisReader.CsvRecords csv = new StudentAnalysisReader.CsvRecords(new StringReader(
+                "\uFEFFid,\"a, b\",\"say \"\"hi\"\"\"\r\n7,\"two\nlines\",\n8,,x"));
+
+        assertThat(csv.next()).containsExactly("id", "a, b", "say \"hi\"");
+        assertThat(csv.next()).containsExactly("7", "two\nlines", "");
+        assertThat(csv.next()).containsExactly("8", "", "x");
+        assertThat(csv.next()).isNull();
+    }
+
+    @Test
+    void mapsEachAnswerTextBackToItsId() throws Exception {
+        Map<String, StudentSubmission> students = read(HEADER
+                + "Ana,101,,S1,2025-11-26,2,\"Red, or crimson\",1,\"A\\, B,D\",0,\"Left 1=>Right 2,Left 2=>\",0,"
+                + "\"blue,big\",1,PARIS,1,3,2,4.5\r\n");
+
+        StudentSubmission ana = students.get("101");
+        assertThat(ana.attempt()).isEqualTo(2);
+        assertThat(ana.score()).isEqualTo("4.5");
+        assertThat(json(ana.submissionData())).isEqualTo(mapper.readTree("""
+                [{"question_id": 11, "answer_id": 111},
+                 {"question_id": 13, "answer_131": "1", "answer_132": "0", "answer_133": "1"},
+                 {"question_id": 14, "answer_141": "1402"},
+                 {"question_id": 16, "answer_for_color": 162, "answer_for_size": 163},
+                 {"question_id": 17, "answer_id": 171}]
+                """));
+    }
+
+    @Test
+    void treatsEmptyCellsAndUnmatchedFreeTextAsUnanswered() throws Exception {
+        Map<String, StudentSubmission> students = read(HEADER
+                + "Ben,102,,S1,2025-11-26,1,\"Say \"\"hi\"\"\",1,,0,,0,\",small\",0,London,0,1,4,\r\n"
+                + "Cy,103,,S1,2025-11-26,1,\"Blue\r\nsky\",0,,0,,0,,0,,0,0,5,0\r\n");
+
+        assertThat(students.get("102").score()).isEqualTo("0");
+        assertThat(json(students.get("102").submissionData())).isEqualTo(mapper.readTree("""
+                [{"question_id": 11, "answer_id": 113}, {"question_id": 16, "answer_for_size": 164}]
+                """));
+        assertThat(json(students.get("103").submissionData())).isEqualTo(mapper.readTree("""
+                [{"question_id": 11, "answer_id": 112}]
+                """));
+    }
+
+    @Test
+    void leavesOutStudentsWhoseAnswersCannotBeMapped() throws Exception {
+        Map<String, StudentSubmission> students = read(HEADER
+                + "Ana,101,,S1,2025-11-26,1,Red or crimson,1,,0,,0,,0,,0,0,5,0\r\n"
+                + "Ben,102,,S1,2025-11-26,1,,0,E,0,,0,,0,,0,0,5,0\r\n"
+                + "Cy,103,,S1,2025-11-26,1,,0,,0,Left 1=>Right 3,0,,0,,0,0,5,0\r\n"
+                + "Dee,104,,S1,2025-11-26,1,,0,,0,,0,,0,,0,0,5,0\r\n"
+                + "Average,,,,,,,,,\r\n");
+
+        assertThat(students).containsOnlyKeys("104");
+    }
+
+    @Test
+    void rejectsAReportWithoutEveryQuestion() {
+        String header = "id,attempt,11: Pick one,1.0,score\n";
+
+        assertThatThrownBy(() -> read(header)).isInstanceOf(IOException.class)
+                .hasMessageContaining("student_analysis header");
+    }
+
+    private Map<String, StudentSubmission> read(String csv) throws Exception {
+        JsonNode questions = mapper.readTree(QUESTIONS);
+        return reader.read(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), questions);
+    }
+
+    // Reparsed, so ids compare by value whether they were put as int or long
+    private static JsonNode json(JsonNode node) throws IOException {
+        return mapper.readTree(node.toString());
+    }
+}
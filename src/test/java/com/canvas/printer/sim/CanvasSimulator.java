@@ -0,0 +1,920 @@
+package com.canvas.printer.sim;
+
+import com.canvas.printer.service.SyntheticAnswers;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A stand-in for the Canvas REST API, served from this JVM on an ephemeral port.
+ *
+ * Serves every endpoint CanvasApiService and QuizAutomationService call, with data
+ * generated deterministically per course id: quizzes, questions, assignment
+ * submissions with submission_history, quiz submissions, students and the test student.
+ * Students answer as a SyntheticAnswers plan says (see {@link #answers}).
+ * Responses carry ETags and Link-header pagination like Canvas's, gzipped when asked for.
+ *
+ * Latency, page size, random 500s, random throttles and a Canvas-style leaky bucket
+ * (X-Rate-Limit-Remaining, 403 "Rate Limit Exceeded") can be set, even while running.
+ *
+ * Usage:
+ * try (var canvas = new CanvasSimulator().latency(Duration.ofMillis(50), Duration.ofMillis(20))) {
+ *     ... canvas.url() ...
+ * }
+ */
+public class CanvasSimulator implements AutoCloseable {
+
+    private static final String[] TYPES = {
+            "multiple_choice_question",
+            "true_false_question",
+            "multiple_answers_question",
+            "matching_question",
+            "multiple_dropdowns_question" };
+    private static final long TEST_STUDENT_ID = 999_999L;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Route> routes = new ArrayList<>();
+    private final Map<String, Course> courses = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicLong nextQuizSubmissionId = new AtomicLong(70_000_000L);
+    private final Map<Long, QuizRef> startedQuizzes = new ConcurrentHashMap<>();
+    private final SyntheticAnswers synthetic = new SyntheticAnswers(mapper);
+
+    // Tunables; volatile so they can be changed while a load test runs
+    private volatile Duration latency = Duration.ZERO;
+    private volatile Duration jitter = Duration.ZERO;
+    private volatile int maxPageSize = 100;
+    private volatile double errorRate;
+    private volatile double throttleRate;
+    private volatile int students = 40;
+    private volatile int quizzes = 5;
+    private volatile int questionsPerQuiz = 50;
+    private volatile int attempts = 2;
+    // About one question in ten skipped and a third answered wrong
+    private volatile SyntheticAnswers.Plan answers = SyntheticAnswers.Plan.score(0.67, 0).skipping(0.1);
+
+    // Leaky bucket, as Canvas meters a token. Disabled while capacity is 0. Guarded by this.
+    private double bucketCapacity;
+    private double bucketRefillPerSecond;
+    private double bucketRemaining;
+    private long bucketUpdatedNanos;
+    private double requestCost = 1.0;
+
+    public CanvasSimulator() {
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        registerRoutes();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String url() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    // --- Configuration ---
+
+    public CanvasSimulator latency(Duration base, Duration jitter) {
+        this.latency = base;
+        this.jitter = jitter;
+        return this;
+    }
+
+    // Caps per_page the way Canvas does (it silently ignores anything above its maximum)
+    public CanvasSimulator maxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+        return this;
+    }
+
+    // Fraction of requests answered with a 500
+    public CanvasSimulator errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    // Fraction of requests answered with a throttled 403, regardless of the bucket
+    public CanvasSimulator throttleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+        return this;
+    }
+
+    /**
+     * Meters requests with a leaky bucket: each request costs requestCost, the bucket
+     * refills at refillPerSecond and an empty bucket throttles. Canvas uses 700 / 10.
+     */
+    public synchronized CanvasSimulator rateLimit(double capacity, double refillPerSecond, double requestCost) {
+        this.bucketCapacity = capacity;
+        this.bucketRefillPerSecond = refillPerSecond;
+        this.bucketRemaining = capacity;
+        this.bucketUpdatedNanos = System.nanoTime();
+        this.requestCost = requestCost;
+        return this;
+    }
+
+    // Shape of every course generated from here on
+    public CanvasSimulator courseShape(int students, int quizzes, int questionsPerQuiz, int attempts) {
+        this.students = students;
+        this.quizzes = quizzes;
+        this.questionsPerQuiz = questionsPerQuiz;
+        this.attempts = attempts;
+        courses.clear();
+        return this;
+    }
+
+    // How students answer in every course generated from here on
+    public CanvasSimulator answers(SyntheticAnswers.Plan answers) {
+        this.answers = answers;
+        courses.clear();
+        return this;
+    }
+
+    // --- Introspection ---
+
+    // Requests served per route, including injected failures
+    public Map<String, Long> requestCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        requestCounts.forEach((route, count) -> counts.put(route, count.sum()));
+        return counts;
+    }
+
+    public List<Long> studentIds(String courseId) {
+        return course(courseId).studentIds;
+    }
+
+    public List<Long> submittedStudentIds(String courseId) {
+        Course course = course(courseId);
+        return course.studentIds.stream().filter(course::hasSubmitted).toList();
+    }
+
+    public List<long[]> quizAndAssignmentIds(String courseId) {
+        List<long[]> ids = new ArrayList<>();
+        for (int k = 0; k < course(courseId).quizCount; k++) {
+            ids.add(new long[] { quizId(k), assignmentId(k) });
+        }
+        return ids;
+    }
+
+    // Regrades one student's submission now, as a teacher editing a score would: a point off
+    public void regrade(String courseId, long assignmentId, long userId) {
+        Course course = course(courseId);
+        String key = assignmentId + "/" + userId;
+        course.regradedAt.put(key, Instant.now().toString());
+        course.submissionsByKey.remove(key);
+        course.submissionNodesByKey.remove(key);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // --- Routing ---
+
+    private void registerRoutes() {
+        route("GET", "quizzes", "/api/v1/courses/(\\d+)/quizzes", (m, q) -> page(course(m.group(1)).quizzes(), q));
+        route("GET", "quiz", "/api/v1/courses/(\\d+)/quizzes/(\\d+)",
+                (m, q) -> ok(course(m.group(1)).quiz(Long.parseLong(m.group(2)))));
+        route("GET", "questions", "/api/v1/courses/(\\d+)/quizzes/(\\d+)/questions",
+                (m, q) -> page(course(m.group(1)).questions(Long.parseLong(m.group(2))), q));
+        route("GET", "quiz_submissions", "/api/v1/courses/(\\d+)/quizzes/(\\d+)/submissions",
+                (m, q) -> page(course(m.group(1)).quizSubmissions(Long.parseLong(m.group(2)), q.get("user_ids[]")), q,
+                        "quiz_submissions"));
+        route("GET", "submissions", "/api/v1/courses/(\\d+)/assignments/(\\d+)/submissions",
+                (m, q) -> page(course(m.group(1)).submissions(Long.parseLong(m.group(2))), q));
+        route("GET", "student_submissions", "/api/v1/courses/(\\d+)/students/submissions",
+                (m, q) -> page(course(m.group(1)).studentSubmissions(Long.parseLong(q.get("assignment_ids[]")),
+                        q.get("student_ids[]"), q.get("submitted_since"), q.get("graded_since"),
+                        "submission_history".equals(q.get("include[]"))), q));
+        route("GET", "submission", "/api/v1/courses/(\\d+)/assignments/(\\d+)/submissions/(\\d+)",
+                (m, q) -> new Response(course(m.group(1)).submission(Long.parseLong(m.group(2)),
+                        Long.parseLong(m.group(3))), null));
+        route("GET", "users", "/api/v1/courses/(\\d+)/users", (m, q) -> page(course(m.group(1)).users(), q));
+
+        // Quiz reports: ready on the second poll, then downloaded through a redirect like Canvas files
+        route("POST", "create_quiz_report", "/api/v1/courses/(\\d+)/quizzes/(\\d+)/reports",
+                (m, q) -> ok(course(m.group(1)).quizReport(Long.parseLong(m.group(2)), false)));
+        route("GET", "quiz_report", "/api/v1/courses/(\\d+)/quizzes/(\\d+)/reports/(\\d+)",
+                (m, q) -> ok(course(m.group(1)).quizReport(Long.parseLong(m.group(2)), true)));
+        route("GET", "file_download", "/files/(\\d+)/(\\d+)/download",
+                (m, q) -> Response.redirect(url() + "/files/" + m.group(1) + "/" + m.group(2) + "/content"));
+        route("GET", "file_content", "/files/(\\d+)/(\\d+)/content",
+                (m, q) -> new Response(course(m.group(1)).studentAnalysis(Long.parseLong(m.group(2))), null,
+                        "text/csv; charset=utf-8", null));
+
+        // Test-student automation
+        route("GET", "student_view_student", "/api/v1/courses/(\\d+)/student_view_student",
+                (m, q) -> ok(mapper.createObjectNode().put("id", TEST_STUDENT_ID).put("name", "Test Student")));
+        route("POST", "start_quiz_submission", "/api/v1/courses/(\\d+)/quizzes/(\\d+)/submissions", (m, q) -> {
+            long id = nextQuizSubmissionId.incrementAndGet();
+            startedQuizzes.put(id, new QuizRef(m.group(1), Long.parseLong(m.group(2))));
+            return ok(quizSubmissionEnvelope(id, Long.parseLong(m.group(2)), "untaken"));
+        });
+        route("GET", "submission_questions", "/api/v1/quiz_submissions/(\\d+)/questions", (m, q) -> {
+            QuizRef quiz = startedQuizzes.get(Long.parseLong(m.group(1)));
+            if (quiz == null) {
+                throw new IllegalArgumentException("No quiz submission " + m.group(1));
+            }
+            ObjectNode body = mapper.createObjectNode();
+            body.set("quiz_submission_questions", course(quiz.courseId()).questions(quiz.quizId()));
+            return ok(body);
+        });
+        route("POST", "answer_questions", "/api/v1/quiz_submissions/(\\d+)/questions", (m, q) -> {
+            ObjectNode body = mapper.createObjectNode();
+            body.putArray("quiz_submission_questions");
+            return ok(body);
+        });
+        route("POST", "complete_quiz_submission", "/api/v1/courses/(\\d+)/quizzes/(\\d+)/submissions/(\\d+)/complete",
+                (m, q) -> ok(quizSubmissionEnvelope(Long.parseLong(m.group(3)), Long.parseLong(m.group(2)),
+                        "complete")));
+    }
+
+    private void route(String method, String name, String regex, Handler handler) {
+        routes.add(new Route(method, name, Pattern.compile(regex), handler));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            Route route = null;
+            Matcher matcher = null;
+            for (Route candidate : routes) {
+                Matcher m = candidate.pattern.matcher(path);
+                if (candidate.method.equals(method) && m.matches()) {
+                    route = candidate;
+                    matcher = m;
+                    break;
+                }
+            }
+            String name = (route != null) ? route.name : "unknown";
+            requestCounts.computeIfAbsent(name, k -> new LongAdder()).increment();
+
+            sleep();
+
+            double remaining = charge();
+            if (remaining < 0 || chance(throttleRate)) {
+                exchange.getResponseHeaders().add("X-Rate-Limit-Remaining", "0.0");
+                send(exchange, 403, json("{\"errors\":[{\"message\":\"403 Forbidden (Rate Limit Exceeded)\"}]}"));
+                return;
+            }
+            if (!Double.isNaN(remaining)) {
+                exchange.getResponseHeaders().add("X-Rate-Limit-Remaining", String.valueOf(remaining));
+                exchange.getResponseHeaders().add("X-Request-Cost", String.valueOf(requestCost));
+            }
+            if (chance(errorRate)) {
+                send(exchange, 500, json("{\"errors\":[{\"message\":\"Internal server error (injected)\"}]}"));
+                return;
+            }
+            if (route == null) {
+                send(exchange, 404, json("{\"errors\":[{\"message\":\"The specified resource does not exist.\"}]}"));
+                return;
+            }
+
+            Response response;
+            try {
+                response = route.handler.handle(matcher, query);
+            } catch (RuntimeException e) {
+                send(exchange, 404, json("{\"errors\":[{\"message\":\"" + e.getMessage() + "\"}]}"));
+                return;
+            }
+
+            if (response.location != null) {
+                exchange.getResponseHeaders().add("Location", response.location);
+                exchange.sendResponseHeaders(302, -1);
+                return;
+            }
+
+            String etag = etag(response.body);
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (response.link != null) {
+                exchange.getResponseHeaders().add("Link", linkHeader(exchange, query, response.link));
+            }
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            send(exchange, 200, response.body, response.contentType);
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        send(exchange, status, body, null);
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body, String contentType) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type",
+                (contentType != null) ? contentType : "application/json; charset=utf-8");
+        // Compressed when asked for, as Canvas does
+        String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accepted != null && accepted.contains("gzip") && body.length > 0) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    // --- Responses ---
+
+    private Response ok(JsonNode body) {
+        return new Response(toBytes(body), null);
+    }
+
+    private Response page(ArrayNode all, Map<String, String> query) {
+        return page(all, query, null);
+    }
+
+    // Some Canvas lists come wrapped as { "<envelope>": [ ... ], "meta": { ... } }
+    private Response page(ArrayNode all, Map<String, String> query, String envelope) {
+        int perPage = Math.min(parseInt(query.get("per_page"), 10), maxPageSize);
+        int page = Math.max(parseInt(query.get("page"), 1), 1);
+        int from = Math.min((page - 1) * perPage, all.size());
+        int to = Math.min(from + perPage, all.size());
+
+        ArrayNode slice = mapper.createArrayNode();
+        for (int i = from; i < to; i++) {
+            slice.add(all.get(i));
+        }
+        int lastPage = Math.max((all.size() + perPage - 1) / perPage, 1);
+        JsonNode body = slice;
+        if (envelope != null) {
+            ObjectNode wrapped = mapper.createObjectNode();
+            wrapped.set(envelope, slice);
+            wrapped.putObject("meta").put("primaryCollection", envelope);
+            body = wrapped;
+        }
+        return new Response(toBytes(body), new PageLinks(page, perPage, lastPage));
+    }
+
+    private String linkHeader(HttpExchange exchange, Map<String, String> query, PageLinks links) {
+        String base = url() + exchange.getRequestURI().getPath();
+        List<String> parts = new ArrayList<>();
+        parts.add(pageUrl(base, query, links.page, links.perPage) + "; rel=\"current\"");
+        if (links.page < links.lastPage) {
+            parts.add(pageUrl(base, query, links.page + 1, links.perPage) + "; rel=\"next\"");
+        }
+        if (links.page > 1) {
+            parts.add(pageUrl(base, query, links.page - 1, links.perPage) + "; rel=\"prev\"");
+        }
+        parts.add(pageUrl(base, query, 1, links.perPage) + "; rel=\"first\"");
+        parts.add(pageUrl(base, query, links.lastPage, links.perPage) + "; rel=\"last\"");
+        return String.join(",", parts);
+    }
+
+    private static String pageUrl(String base, Map<String, String> query, int page, int perPage) {
+        Map<String, String> params = new LinkedHashMap<>(query);
+        params.put("page", String.valueOf(page));
+        params.put("per_page", String.valueOf(perPage));
+        StringBuilder url = new StringBuilder("<").append(base).append('?');
+        params.forEach((k, v) -> {
+            // Repeated array parameters were joined by parseQuery
+            for (String value : k.endsWith("[]") ? v.split(",") : new String[] { v }) {
+                url.append(k).append('=').append(value).append('&');
+            }
+        });
+        url.setLength(url.length() - 1);
+        return url.append('>').toString();
+    }
+
+    private ObjectNode quizSubmissionEnvelope(long id, long quizId, String state) {
+        ObjectNode body = mapper.createObjectNode();
+        body.putArray("quiz_submissions").addObject()
+                .put("id", id)
+                .put("quiz_id", quizId)
+                .put("user_id", TEST_STUDENT_ID)
+                .put("attempt", 1)
+                .put("validation_token", HexFormat.of().toHexDigits(id))
+                .put("workflow_state", state);
+        return body;
+    }
+
+    // --- Generated course data ---
+
+    private Course course(String courseId) {
+        return courses.computeIfAbsent(courseId, Course::new);
+    }
+
+    private static long quizId(int k) {
+        return 24_000_000L + k;
+    }
+
+    private static long assignmentId(int k) {
+        return 72_000_000L + k;
+    }
+
+    /**
+     * One course's data, generated on first use from a seed derived from its id. Large
+     * JSON documents are built once and kept, so the simulator spends its time serving.
+     */
+    private final class Course {
+        private final String id;
+        private final long seed;
+        private final int quizCount;
+        private final int questionCount;
+        private final int attemptCount;
+        private final SyntheticAnswers.Plan answerPlan;
+        private final List<Long> studentIds = new ArrayList<>();
+        private final Map<Long, ArrayNode> questionsByQuiz = new ConcurrentHashMap<>();
+        private final Map<String, byte[]> submissionsByKey = new ConcurrentHashMap<>();
+        private final Map<String, ObjectNode> submissionNodesByKey = new ConcurrentHashMap<>();
+        private final Map<String, String> regradedAt = new ConcurrentHashMap<>();
+        private final Map<Long, LongAdder> reportPolls = new ConcurrentHashMap<>();
+        private final Map<Long, byte[]> reportsByQuiz = new ConcurrentHashMap<>();
+        private final ArrayNode users;
+        private final ArrayNode quizzes;
+
+        private Course(String id) {
+            this.id = id;
+            this.seed = id.hashCode();
+            this.quizCount = CanvasSimulator.this.quizzes;
+            this.questionCount = questionsPerQuiz;
+            this.attemptCount = attempts;
+            this.answerPlan = answers;
+
+            users = mapper.createArrayNode();
+            for (int i = 0; i < students; i++) {
+                long userId = 100_000_000L + i;
+                studentIds.add(userId);
+                users.addObject().put("id", userId)
+                        .put("name", "Student " + i)
+                        .put("sortable_name", "Student, " + i);
+            }
+
+            quizzes = mapper.createArrayNode();
+            for (int k = 0; k < quizCount; k++) {
+                ObjectNode quiz = quizzes.addObject()
+                        .put("id", quizId(k))
+                        .put("title", "Practice Test " + (k + 1))
+                        .put("question_count", questionCount)
+                        .put("assignment_id", assignmentId(k))
+                        .put("points_possible", questionCount)
+                        .put("time_limit", 60);
+                ArrayNode types = quiz.putArray("question_types");
+                for (String type : TYPES) {
+                    types.add(type);
+                }
+            }
+        }
+
+        ArrayNode users() {
+            return users;
+        }
+
+        ArrayNode quizzes() {
+            return quizzes;
+        }
+
+        JsonNode quiz(long quizId) {
+            for (JsonNode quiz : quizzes) {
+                if (quiz.path("id").asLong() == quizId) {
+                    return quiz;
+                }
+            }
+            throw new IllegalArgumentException("No quiz " + quizId + " in course " + id);
+        }
+
+        ArrayNode questions(long quizId) {
+            return questionsByQuiz.computeIfAbsent(quizId, this::generateQuestions);
+        }
+
+        double score(long assignmentId, long userId) {
+            double score = questionCount * 0.8;
+            return regradedAt.containsKey(assignmentId + "/" + userId) ? score - 1 : score;
+        }
+
+        boolean hasSubmitted(long userId) {
+            return Math.floorMod(userId * 31 + seed, 10) != 0; // ~10% never submit
+        }
+
+        ArrayNode submissions(long assignmentId) {
+            ArrayNode list = mapper.createArrayNode();
+            for (long userId : studentIds) {
+                boolean submitted = hasSubmitted(userId);
+                // Students hand in a few seconds apart and are auto-graded on submission
+                Instant submittedAt = Instant.parse("2025-11-26T02:00:00Z").plusSeconds(userId % 1000 * 7);
+                String gradedAt = regradedAt.getOrDefault(assignmentId + "/" + userId, submittedAt.toString());
+                list.addObject().put("id", assignmentId * 1000 + userId % 1000)
+                        .put("user_id", userId)
+                        .put("assignment_id", assignmentId)
+                        .put("score", submitted ? score(assignmentId, userId) : 0)
+                        .put("attempt", submitted ? attemptCount : 0)
+                        .put("submitted_at", submitted ? submittedAt.toString() : null)
+                        .put("graded_at", submitted ? gradedAt : null)
+                        .put("workflow_state", submitted ? "graded" : "unsubmitted");
+            }
+            return list;
+        }
+
+        /**
+         * The students/submissions listing: some or "all" students, optionally only those handed
+         * in or graded at or after a given time, optionally with their submission_history.
+         */
+        ArrayNode studentSubmissions(long assignmentId, String studentIdsParam, String submittedSince,
+                String gradedSince, boolean withHistory) {
+            List<String> wanted = (studentIdsParam == null) ? List.of("all") : List.of(studentIdsParam.split(","));
+            ArrayNode list = mapper.createArrayNode();
+            for (JsonNode s : submissions(assignmentId)) {
+                String userId = s.path("user_id").asText();
+                if (!wanted.contains("all") && !wanted.contains(userId)) {
+                    continue;
+                }
+                if (since(s.path("submitted_at"), submittedSince) && since(s.path("graded_at"), gradedSince)) {
+                    ObjectNode entry = ((ObjectNode) s).deepCopy();
+                    if (withHistory) {
+                        entry.set("submission_history",
+                                submissionNode(assignmentId, s.path("user_id").asLong()).get("submission_history"));
+                    }
+                    list.add(entry);
+                }
+            }
+            return list;
+        }
+
+        private static boolean since(JsonNode at, String since) {
+            if (since == null) {
+                return true;
+            }
+            return at.isTextual() && !Instant.parse(at.asText()).isBefore(Instant.parse(since));
+        }
+
+        // A student_analysis quiz report, generated once the report has been polled twice
+        ObjectNode quizReport(long quizId, boolean poll) {
+            LongAdder polls = reportPolls.computeIfAbsent(quizId, k -> new LongAdder());
+            if (poll) {
+                polls.increment();
+            }
+            boolean ready = polls.sum() >= 2;
+            ObjectNode report = mapper.createObjectNode()
+                    .put("id", quizId * 10 + 1)
+                    .put("quiz_id", quizId)
+                    .put("report_type", "student_analysis")
+                    .put("includes_all_versions", false)
+                    .put("generatable", true);
+            report.putObject("progress")
+                    .put("workflow_state", ready ? "completed" : "running")
+                    .put("completion", ready ? 100 : 50);
+            if (ready) {
+                report.putObject("file")
+                        .put("id", quizId * 10 + 2)
+                        .put("filename", "quiz-" + quizId + "-student_analysis.csv")
+                        .put("content-type", "text/csv")
+                        .put("url", url() + "/files/" + id + "/" + quizId + "/download?verifier=sim");
+            } else {
+                report.putNull("file");
+            }
+            return report;
+        }
+
+        /**
+         * The report's CSV, written the way Canvas writes it: one row per student with each
+         * question's answer as text (commas escaped as "\,", matches as "left=>right").
+         */
+        byte[] studentAnalysis(long quizId) {
+            return reportsByQuiz.computeIfAbsent(quizId, k -> {
+                ArrayNode questions = questions(quizId);
+                long assignmentId = assignmentId((int) (quizId - quizId(0)));
+                StringBuilder csv = new StringBuilder();
+                List<String> header = new ArrayList<>(List.of("name", "id", "sis_id", "section", "section_id",
+                        "section_sis_id", "submitted", "attempt"));
+                for (JsonNode question : questions) {
+                    header.add(question.path("id").asLong() + ": "
+                            + question.path("question_text").asText().replaceAll("<[^>]+>", ""));
+                    header.add("1.0");
+                }
+                header.addAll(List.of("n correct", "n incorrect", "score"));
+                csvLine(csv, header);
+
+                for (long userId : studentIds) {
+                    if (!hasSubmitted(userId)) {
+                        continue;
+                    }
+                    JsonNode history = submissionNode(assignmentId, userId).path("submission_history");
+                    JsonNode data = history.get(history.size() - 1).path("submission_data");
+                    List<String> row = new ArrayList<>(List.of("Student " + (userId - 100_000_000L),
+                            String.valueOf(userId), "", "Section 1", "1", "", "2025-11-26 02:46:42 UTC",
+                            String.valueOf(attemptCount)));
+                    int correct = 0;
+                    for (JsonNode question : questions) {
+                        JsonNode answer = null;
+                        for (JsonNode a : data) {
+                            if (a.path("question_id").asLong() == question.path("id").asLong()) {
+                                answer = a;
+                            }
+                        }
+                        row.add((answer != null) ? answerText(question, answer) : "");
+                        boolean right = answer != null && answer.path("correct").asBoolean();
+                        correct += right ? 1 : 0;
+                        row.add(right ? "1.0" : "0.0");
+                    }
+                    row.addAll(List.of(String.valueOf(correct), String.valueOf(questions.size() - correct),
+                            String.valueOf(questionCount * 0.8)));
+                    csvLine(csv, row);
+                }
+                return csv.toString().getBytes(StandardCharsets.UTF_8);
+            });
+        }
+
+        private String answerText(JsonNode question, JsonNode answer) {
+            JsonNode options = question.path("answers");
+            List<String> parts = new ArrayList<>();
+            switch (question.path("question_type").asText()) {
+                case "multiple_answers_question" -> {
+                    for (JsonNode option : options) {
+                        if ("1".equals(answer.path("answer_" + option.path("id").asLong()).asText())) {
+                            parts.add(option.path("text").asText().replace(",", "\\,"));
+                        }
+                    }
+                }
+                case "matching_question" -> {
+                    for (JsonNode option : options) {
+                        long matchId = answer.path("answer_" + option.path("id").asLong()).asLong();
+                        String right = "";
+                        for (JsonNode match : question.path("matches")) {
+                            if (match.path("match_id").asLong() == matchId) {
+                                right = match.path("text").asText();
+                            }
+                        }
+                        parts.add((option.path("text").asText().replace("=>", "\\=>") + "=>"
+                                + right.replace("=>", "\\=>")).replace(",", "\\,"));
+                    }
+                }
+                case "multiple_dropdowns_question" -> {
+                    List<String> blanks = new ArrayList<>();
+                    for (JsonNode option : options) {
+                        if (!blanks.contains(option.path("blank_id").asText())) {
+                            blanks.add(option.path("blank_id").asText());
+                        }
+                    }
+                    for (String blank : blanks) {
+                        long chosen = answer.path("answer_for_" + blank).asLong();
+                        for (JsonNode option : options) {
+                            if (option.path("id").asLong() == chosen) {
+                                parts.add(option.path("text").asText().replace(",", "\\,"));
+                            }
+                        }
+                    }
+                }
+                default -> {
+                    for (JsonNode option : options) {
+                        if (option.path("id").asLong() == answer.path("answer_id").asLong()) {
+                            parts.add(option.path("text").asText());
+                        }
+                    }
+                }
+            }
+            return String.join(",", parts);
+        }
+
+        private static void csvLine(StringBuilder csv, List<String> cells) {
+            for (int i = 0; i < cells.size(); i++) {
+                String cell = cells.get(i);
+                if (cell.contains(",") || cell.contains("\"") || cell.contains("\n")) {
+                    cell = "\"" + cell.replace("\"", "\"\"") + "\"";
+                }
+                csv.append(i > 0 ? "," : "").append(cell);
+            }
+            csv.append('\n');
+        }
+
+        // Serialized once: submission_history is the largest payload and the most requested
+        byte[] submission(long assignmentId, long userId) {
+            return submissionsByKey.computeIfAbsent(assignmentId + "/" + userId,
+                    key -> toBytes(submissionNode(assignmentId, userId)));
+        }
+
+        ObjectNode submissionNode(long assignmentId, long userId) {
+            return submissionNodesByKey.computeIfAbsent(assignmentId + "/" + userId,
+                    key -> generateSubmission(assignmentId, userId));
+        }
+
+        ArrayNode quizSubmissions(long quizId, String userIdsParam) {
+            List<String> wanted = (userIdsParam == null) ? null : List.of(userIdsParam.split(","));
+            ArrayNode list = mapper.createArrayNode();
+            for (long userId : studentIds) {
+                if (wanted != null && !wanted.contains(String.valueOf(userId))) {
+                    continue;
+                }
+                if (!hasSubmitted(userId)) {
+                    continue;
+                }
+                list.addObject().put("id", quizId * 1000 + userId % 1000)
+                        .put("quiz_id", quizId)
+                        .put("user_id", userId)
+                        .put("quiz_version", 1)
+                        .put("attempt", attemptCount)
+                        .put("started_at", "2025-11-26T02:23:28Z")
+                        .put("finished_at", "2025-11-26T02:46:42Z")
+                        .put("time_spent", 1394)
+                        .put("kept_score", score(assignmentId((int) (quizId - quizId(0))), userId))
+                        .put("workflow_state", "complete");
+            }
+            return list;
+        }
+
+        private ArrayNode generateQuestions(long quizId) {
+            ArrayNode questions = mapper.createArrayNode();
+            for (int q = 0; q < questionCount; q++) {
+                long qId = quizId * 1000 + q;
+                String type = TYPES[q % TYPES.length];
+                ObjectNode node = questions.addObject()
+                        .put("id", qId)
+                        .put("quiz_id", quizId)
+                        .put("position", q + 1)
+                        .put("question_type", type)
+                        .put("question_text", "<p>Question " + (q + 1) + ": choose the best answer.</p>")
+                        .put("points_possible", 1.0)
+                        .put("neutral_comments", "");
+                ArrayNode answers = node.putArray("answers");
+                if ("matching_question".equals(type)) {
+                    ArrayNode matches = node.putArray("matches");
+                    for (int k = 0; k < 4; k++) {
+                        matches.addObject().put("match_id", qId * 10 + k).put("text", "Right " + k);
+                        answers.addObject().put("id", qId * 10 + k).put("text", "Left " + k)
+                                .put("match_id", qId * 10 + k);
+                    }
+                } else {
+                    int options = "true_false_question".equals(type) ? 2 : 4;
+                    for (int k = 0; k < options; k++) {
+                        ObjectNode answer = answers.addObject().put("id", qId * 10 + k)
+                                .put("text", "Option " + (char) ('A' + k))
+                                .put("weight", k % 2 == 0 ? 100 : 0);
+                        if ("multiple_dropdowns_question".equals(type)) {
+                            answer.put("blank_id", "blank" + (k / 2));
+                        }
+                    }
+                }
+            }
+            return questions;
+        }
+
+        private ObjectNode generateSubmission(long assignmentId, long userId) {
+            boolean submitted = hasSubmitted(userId);
+            ObjectNode root = mapper.createObjectNode()
+                    .put("id", assignmentId * 1000 + userId % 1000)
+                    .put("user_id", userId)
+                    .put("assignment_id", assignmentId)
+                    .put("score", submitted ? score(assignmentId, userId) : 0)
+                    .put("attempt", submitted ? attemptCount : 0)
+                    .put("workflow_state", submitted ? "graded" : "unsubmitted");
+            ArrayNode history = root.putArray("submission_history");
+            if (!submitted) {
+                return root;
+            }
+
+            long quizId = quizId((int) (assignmentId - assignmentId(0)));
+            ArrayNode questions = questions(quizId);
+            Random random = new Random(seed ^ userId ^ assignmentId);
+            for (int a = 1; a <= attemptCount; a++) {
+                ObjectNode attempt = history.addObject().put("attempt", a)
+                        .put("submitted_at", "2025-11-26T02:46:42Z")
+                        .put("workflow_state", "graded");
+                attempt.set("submission_data", synthetic.submissionData(questions, answerPlan, random));
+            }
+            return root;
+        }
+    }
+
+    // --- Helpers ---
+
+    private void sleep() {
+        long base = latency.toMillis();
+        long spread = jitter.toMillis();
+        long millis = base + (spread > 0 ? ThreadLocalRandom.current().nextLong(-spread, spread + 1) : 0);
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Remaining bucket after charging this request; NaN if metering is off, negative if throttled
+    private synchronized double charge() {
+        if (bucketCapacity <= 0) {
+            return Double.NaN;
+        }
+        long now = System.nanoTime();
+        double refill = (now - bucketUpdatedNanos) / 1e9 * bucketRefillPerSecond;
+        bucketUpdatedNanos = now;
+        bucketRemaining = Math.min(bucketCapacity, bucketRemaining + refill);
+        if (bucketRemaining < requestCost) {
+            return -1;
+        }
+        bucketRemaining -= requestCost;
+        return bucketRemaining;
+    }
+
+    private static boolean chance(double rate) {
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            // Array parameters (user_ids[]=1&user_ids[]=2) are joined as "1,2"
+            params.merge(key, value, (a, b) -> key.endsWith("[]") ? a + "," + b : a);
+        }
+        return params;
+    }
+
+    private static int parseInt(String value, int fallback) {
+        try {
+            return (value == null) ? fallback : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static String etag(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return "W/\"" + Long.toHexString(crc.getValue()) + "-" + body.length + "\"";
+    }
+
+    private static byte[] json(String body) {
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] toBytes(JsonNode node) {
+        try {
+            return mapper.writeValueAsBytes(node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Response handle(Matcher path, Map<String, String> query);
+    }
+
+    private record Route(String method, String name, Pattern pattern, Handler handler) {
+    }
+
+    private record PageLinks(int page, int perPage, int lastPage) {
+    }
+
+    private record Response(byte[] body, PageLinks link, String contentType, String location) {
+
+        Response(byte[] body, PageLinks link) {
+            this(body, link, null, null);
+        }
+
+        static Response redirect(String location) {
+            return new Response(new byte[0], null, null, location);
+        }
+    }
+
+    private record QuizRef(String courseId, long quizId) {
+    }
+}